@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.rascalmpl.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the work the plugin does itself before a Rascal tool is forked, on synthetic projects:
+ * deeply nested source folders with 20 modules per folder, every fourth folder ignored,
+ * half of the modules compiled before, and a few hundred library dependencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RascalMojoBenchmark {
+	private static final int MODULES_PER_FOLDER = 20;
+	private static final int LIBRARIES = 300;
+
+	@Param({ "1000", "10000", "100000" })
+	public int modules;
+
+	private Path root;
+	private CompileRascalMojo mojo;
+	private List<File> srcs;
+	private List<File> ignores;
+	private Set<Path> ignored;
+	private List<File> sources;
+	private Map<String, String> parameters;
+	private Path argumentFile;
+
+	@Setup(Level.Trial)
+	public void createProject() throws Exception {
+		root = Files.createTempDirectory("rascal-benchmark-");
+		Path src = root.resolve("src");
+		Path bin = root.resolve("bin");
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+
+		srcs = List.of(src.toFile());
+		ignores = new ArrayList<>();
+		sources = new ArrayList<>();
+
+		for (int i = 0; i < modules; i++) {
+			int folder = i / MODULES_PER_FOLDER;
+			Path relative = Path.of("a" + folder % 10, "b" + folder / 10 % 10, "c" + folder / 100 % 10, "d" + folder / 1000, "e");
+			Path module = src.resolve(relative).resolve("M" + i + ".rsc");
+
+			Files.createDirectories(module.getParent());
+			Files.writeString(module, "module M" + i + "\n");
+			Files.setLastModifiedTime(module, old);
+			sources.add(module.toFile());
+
+			if (i % MODULES_PER_FOLDER == 0 && folder % 4 == 0) {
+				ignores.add(module.getParent().toFile());
+			}
+
+			if (i % 2 == 0) {
+				Path tpl = bin.resolve("$").resolve(relative).resolve("$M" + i + ".tpl");
+				Files.createDirectories(tpl.getParent());
+				Files.writeString(tpl, "");
+			}
+		}
+
+		ignored = ignores.stream().map(l -> l.toPath().normalize()).collect(Collectors.toSet());
+
+		Model model = new Model();
+		model.setGroupId("org.rascalmpl");
+		model.setArtifactId("benchmark");
+		model.setVersion("1.0.0");
+		Build build = new Build();
+		build.setDirectory(root.resolve("target").toString());
+		build.setOutputDirectory(bin.toString());
+		model.setBuild(build);
+
+		MavenProject project = new MavenProject(model);
+		project.setFile(root.resolve("pom.xml").toFile());
+
+		Set<Artifact> artifacts = new HashSet<>();
+		for (int i = 0; i < LIBRARIES; i++) {
+			Artifact artifact = new DefaultArtifact("org.example", "lib" + i, "1.0." + i, "compile", "jar", null, new DefaultArtifactHandler("jar"));
+			artifact.setFile(root.resolve("repo").resolve("lib" + i + "-1.0." + i + ".jar").toFile());
+			artifacts.add(artifact);
+		}
+		project.setArtifacts(artifacts);
+
+		mojo = new CompileRascalMojo();
+		mojo.project = project;
+		mojo.srcs = srcs;
+		mojo.ignores = ignores;
+		mojo.libs = new ArrayList<>(mojo.collectDependentArtifactLibraries(project));
+		mojo.resources = List.of();
+		mojo.bin = bin.toFile();
+		mojo.memory = "2G";
+		mojo.cacheDirectory = root.resolve("cache").toFile();
+		mojo.cachedRascalRuntime = root.resolve("rascal.jar");
+
+		parameters = new HashMap<>();
+		parameters.put("modules", sources.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator)));
+		argumentFile = root.resolve("benchmark.args");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteProject() throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Benchmark
+	public List<File> allRascalSourceFiles() {
+		return mojo.allRascalSourceFiles(srcs, ignores);
+	}
+
+	@Benchmark
+	public List<File> getTodoList() throws Exception {
+		return mojo.getTodoList(mojo.bin, srcs, ignores, "rsc", "tpl", "$");
+	}
+
+	@Benchmark
+	public int isIgnoredBy() {
+		int count = 0;
+
+		for (File source : sources) {
+			if (mojo.isIgnoredBy(ignored, source)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	@Benchmark
+	public List<File> collectDependentArtifactLibraries() throws Exception {
+		return mojo.collectDependentArtifactLibraries(mojo.project);
+	}
+
+	@Benchmark
+	public Path buildCommand() throws IOException {
+		List<String> command = mojo.buildCommand(false, "", srcs, ignores, mojo.libs, mojo.resources, mojo.bin, parameters, null);
+		AbstractRascalMojo.writeArgumentFile(argumentFile, command.subList(1, command.size()));
+		return argumentFile;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Generates a synthetic Rascal project: `scale.modules` modules (default 2000) in a nested
+// directory structure, with a handful of hub modules that almost everybody imports and
+// a few more imports of nearby modules. Imports only point to modules with a lower number,
+// so the import graph is acyclic. A fixed seed keeps the project the same between runs.
+
+int count = Integer.getInteger("scale.modules", 2000)
+int hubs = 10
+Random random = new Random(42)
+File root = new File(basedir, "src/main/rascal")
+
+String dir(int i) {
+    return "scale/a" + (i % 10) + "/b" + (i.intdiv(10) % 10) + "/c" + i.intdiv(100)
+}
+
+String name(int i) {
+    return dir(i).replace("/", "::") + "::M" + i
+}
+
+void write(File root, String path, String text) {
+    File file = new File(root, path)
+    file.parentFile.mkdirs()
+    file.text = text
+}
+
+for (int i = 0; i < count; i++) {
+    Set<Integer> imports = new TreeSet<>()
+
+    for (int h = 0; h < Math.min(hubs, i) && imports.size() < 3; h++) {
+        imports.add(random.nextInt(Math.min(hubs, i)))
+    }
+
+    for (int n = 0; n < 2 && i > hubs; n++) {
+        int from = Math.max(hubs, i - 200)
+        imports.add(from + random.nextInt(i - from))
+    }
+
+    StringBuilder text = new StringBuilder("module " + name(i) + "\n")
+
+    if (!imports.isEmpty()) {
+        text.append("\n")
+        imports.each { text.append("import " + name(it) + ";\n") }
+    }
+
+    text.append("\nint f" + i + "(int n) = n + " + i + ";\n")
+
+    if (!imports.isEmpty()) {
+        // type checking this resolves all imports, but the tests never call it
+        text.append("\nint g" + i + "(int n) = " + imports.collect { "f" + it + "(n)" }.join(" + ") + ";\n")
+    }
+
+    if (i % 10 == 0) {
+        text.append("\ntest bool t" + i + "() = f" + i + "(0) == " + i + ";\n")
+    }
+
+    write(root, dir(i) + "/M" + i + ".rsc", text.toString())
+}
+
+// the module that the single-file-change scenario edits; nothing imports it
+write(root, "scale/Leaf.rsc", "module scale::Leaf\n\nimport " + name(count - 1) + ";\n\nint leaf() = f" + (count - 1) + "(0);\n")
+
+println "Generated " + (count + 1) + " Rascal modules in " + root
+return true
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Checks that the three scenarios did what they should, and reports wall time and peak heap
+// for each of them in scale-report.txt. Peak heap is the largest heap occupancy before
+// a collection, as logged by any one JVM (maven itself or a forked Rascal tool) in that scenario.
+
+File log = new File(basedir, "build.log")
+assert log.exists()
+
+List<String> scenarios = ["cold", "nochange", "change"]
+List<String> times = (log.text =~ /Total time:\s+([^\n\r]+)/).collect { it[1].trim() }
+assert times.size() == scenarios.size() : "expected one maven run per scenario, found " + times.size()
+
+assert new File(basedir, "target/relocatedClasses").isDirectory()
+assert log.text.contains("is up-to-date") : "the no-change scenario should not repackage"
+
+long toMegabytes(String amount, String unit) {
+    long value = Long.parseLong(amount)
+    return unit == "G" ? value * 1024 : unit == "K" ? value / 1024 : value
+}
+
+StringBuilder report = new StringBuilder(String.format("%-10s %15s %15s %6s%n", "scenario", "wall time", "peak heap (MB)", "JVMs"))
+
+scenarios.eachWithIndex { scenario, index ->
+    List<File> gcLogs = basedir.listFiles().findAll { it.name.startsWith("scale-" + scenario + "-") && it.name.endsWith(".log") }
+    long peak = 0
+
+    gcLogs.each { gcLog ->
+        (gcLog.text =~ /(\d+)([KMG])->\d+[KMG]\(\d+[KMG]\)/).each { peak = Math.max(peak, toMegabytes(it[1], it[2])) }
+    }
+
+    report.append(String.format("%-10s %15s %15d %6d%n", scenario, times[index], peak, gcLogs.size()))
+}
+
+new File(basedir, "scale-report.txt").text = report.toString()
+println report
+return true
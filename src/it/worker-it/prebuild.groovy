@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Starts two compile workers on free ports of this machine, each in its own maven process, waits
+// until they accept connections and passes their addresses to the build. verify.groovy stops them
+// again; should the build fail before that, they stop by themselves after being idle for a while.
+
+// both are held open while choosing, so they differ
+List<ServerSocket> free = (1..2).collect { new ServerSocket(0, 1, InetAddress.getLoopbackAddress()) }
+List<Integer> ports = free.collect { it.localPort }
+free.each { it.close() }
+String rascalVersion = (new File(basedir, "pom.xml").text =~ /<rascal.version>([^<]+)</)[0][1]
+String mvn = new File(System.getProperty("maven.home"), "bin/mvn" + (System.getProperty("os.name").startsWith("Windows") ? ".cmd" : "")).path
+File workers = new File(basedir, "workers")
+workers.mkdirs()
+new File(workers, "ports").text = ports.join(",")
+
+Map<Integer, Process> started = [:]
+
+ports.each { port ->
+    List<String> command = [mvn, "-B",
+        "-Dmaven.repo.local=" + localRepositoryPath,
+        "org.rascalmpl:rascal-maven-plugin:" + pluginVersion + ":worker",
+        "-Dport=" + port,
+        "-DworkerToken=worker-it",
+        "-DrascalVersion=" + rascalVersion,
+        "-DidleTimeout=600"]
+
+    Process process = new ProcessBuilder(command)
+        .directory(workers)
+        .redirectErrorStream(true)
+        .redirectOutput(new File(workers, "worker-" + port + ".log"))
+        .start()
+
+    new File(workers, "worker-" + port + ".pid").text = Long.toString(process.pid())
+    started[port] = process
+}
+
+long deadline = System.currentTimeMillis() + 300_000
+
+started.each { port, process ->
+    while (true) {
+        try {
+            new Socket("127.0.0.1", port).close()
+            break
+        }
+        catch (IOException e) {
+            assert process.isAlive() : "worker on port " + port + " stopped; see " + new File(workers, "worker-" + port + ".log")
+            assert System.currentTimeMillis() < deadline : "worker on port " + port + " did not start listening"
+            Thread.sleep(1000)
+        }
+    }
+}
+
+// read by the maven process of the build
+File config = new File(basedir, ".mvn/maven.config")
+config.parentFile.mkdirs()
+config.text = "-Dworkers=" + ports.collect { "127.0.0.1:" + it }.join(",") + "\n"
+
+return true
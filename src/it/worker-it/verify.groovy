@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Stops the workers that prebuild.groovy started, and checks that both of them compiled
+// a cluster of modules and that their outputs arrived in the bin folder of the build.
+
+File workers = new File(basedir, "workers")
+List<Integer> ports = new File(workers, "ports").text.trim().split(",").collect { Integer.parseInt(it) }
+
+ports.each { port ->
+    long pid = Long.parseLong(new File(workers, "worker-" + port + ".pid").text.trim())
+    ProcessHandle.of(pid).ifPresent { handle ->
+        handle.descendants().forEach { it.destroy() }
+        handle.destroy()
+    }
+}
+
+String buildLog = new File(basedir, "build.log").text
+assert buildLog.contains("Distributing 3 modules over 2 workers")
+assert !buildLog.contains("compiling its") : "no module should have been compiled locally"
+
+ports.each { port ->
+    String workerLog = new File(workers, "worker-" + port + ".log").text
+    assert workerLog.contains("Compiling for") : "worker on port " + port + " did not get a job"
+}
+
+List<String> compiled = []
+new File(basedir, "target/classes").eachFileRecurse { if (it.name.endsWith(".tpl")) compiled << it.name }
+["A", "B", "C"].each { assert compiled.contains('$' + it + ".tpl") : "no .tpl file for module " + it + " in " + compiled }
+
+return true
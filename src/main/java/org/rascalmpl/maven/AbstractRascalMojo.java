@@ -12,20 +12,44 @@
  */
 package org.rascalmpl.maven;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
@@ -98,11 +122,59 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 	@Parameter(defaultValue="")
 	protected String mainModule;
 
+	/**
+	 * Shared on-disk cache for outputs that can be reused between builds and projects.
+	 * Entries are never evicted, except that the extracted library of a locally built jar replaces the
+	 * one of its previous build; the whole directory can be deleted at any time between builds
+	 * to reclaim space, for example with `rm -rf ~/.m2/repository/.cache/rascal-maven-plugin`.
+	 */
+	@Parameter(property = "cacheDirectory", defaultValue = "${settings.localRepository}/.cache/rascal-maven-plugin", required = true)
+	protected File cacheDirectory;
+
+	/**
+	 * Pass the Rascal files of libraries to the tools as folders extracted in the cache, in front of
+	 * the jar files which still provide the classes
+	 */
+	@Parameter(property = "extractLibraries", defaultValue = "false", required = false)
+	protected boolean extractLibraries;
+
+	/**
+	 * In a multi-module build, use the output folders of upstream Rascal projects instead of their freshly packaged jars
+	 */
+	@Parameter(property = "preferReactorOutputs", defaultValue = "false", required = false)
+	protected boolean preferReactorOutputs;
+
+	/**
+	 * Seconds after which a forked tool is considered hung and killed; 0 means never.
+	 * Can be set per goal with `-Drascal.<goal>.timeout`.
+	 */
+	@Parameter(property = "timeout", defaultValue = "0", required = false)
+	protected long timeout;
+
+	/**
+	 * Seconds without any output or CPU activity after which a forked tool is considered hung; 0 means never.
+	 * Can be set per goal with `-Drascal.<goal>.progressTimeout`.
+	 */
+	@Parameter(property = "progressTimeout", defaultValue = "0", required = false)
+	protected long progressTimeout;
+
+	/**
+	 * Record the forked tool with Java Flight Recorder and print a summary of the hotspots afterwards.
+	 * The recordings are kept in the build directory.
+	 */
+	@Parameter(property = "profile", defaultValue = "false", required = false)
+	protected boolean profile;
+
 	/**
 	 * Which `-Drascal.skipTag.skip` to use
 	 */
 	protected final String skipTag;
 
+	/**
+	 * How long to record a hung process before killing it
+	 */
+	private static final int HANG_RECORDING_SECONDS = 10;
+
 	/**
 	 * Class with `static int main(String[] arg)` method to call
 	 */
@@ -114,6 +186,32 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 	 */
 	protected Map<String, String> extraParameters = new HashMap<>();
 
+	/**
+	 * Options for the forked JVM itself, on top of the memory settings.
+	 */
+	protected List<String> extraJvmArguments = new LinkedList<>();
+
+	/**
+	 * When the forked processes last printed something, for the hang detection
+	 */
+	private final Map<Process, AtomicLong> lastOutput = new ConcurrentHashMap<>();
+
+	/**
+	 * The threads that relay the output of the forked processes, which may still be busy when the process has ended
+	 */
+	private final Map<Process, Thread> relays = new ConcurrentHashMap<>();
+
+	/**
+	 * How long to wait for the rest of the output after a process ended. Processes started by the tool
+	 * itself can keep the pipe open after it exited, so we can not wait for the end of the stream forever.
+	 */
+	private static final long RELAY_DRAIN_MILLIS = 10_000;
+
+	/**
+	 * Flight recordings of the forked processes, when profiling
+	 */
+	private final Map<Process, Path> recordings = new ConcurrentHashMap<>();
+
 	/**
 	 * The Rascal runtime jar that will be used to load classes (including the main class) from.
 	 * This is where bootstrap issues are resolved.
@@ -186,17 +284,7 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 
 			setExtraParameters();
 
-			int exitVal = runMain(
-				verbose,
-				"",
-				srcs,
-				ignores,
-				libs,
-				resources,
-				bin,
-				extraParameters,
-				true)
-				.waitFor();
+			int exitVal = run();
 
                         if (exitVal != 0) {
                             throw new MojoExecutionException(mainClass + " exited with error code " + exitVal);
@@ -215,6 +303,22 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 		}
 	}
 
+	/**
+	 * Runs the tool after all paths and parameters have been configured, and returns its exit code.
+	 */
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		return waitFor(runMain(
+			verbose,
+			"",
+			srcs,
+			ignores,
+			libs,
+			resources,
+			bin,
+			extraParameters,
+			true));
+	}
+
 	/**
 	 * Finds the rascal.jar file that the pom.xml depends on.
 	 * When the current project is rascal itself we resolve to a declared bootstrap
@@ -266,10 +370,24 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 
 	protected List<File> collectDependentArtifactLibraries(MavenProject project) throws URISyntaxException, IOException {
 		List<File> libs = new LinkedList<>();
+		Map<String, MavenProject> reactor = reactorProjects();
 
 		for (Object o : project.getArtifacts()) {
 			Artifact a = (Artifact) o;
 			File file = a.getFile().getAbsoluteFile();
+			MavenProject upstream = reactor.get(a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getBaseVersion());
+
+			if (upstream != null && new File(upstream.getBuild().getOutputDirectory()).isDirectory()) {
+				// the same .tpl files as in the jar that was just packaged, without the zip in between
+				libs.add(new File(upstream.getBuild().getOutputDirectory()).getAbsoluteFile());
+				continue;
+			}
+
+			File extracted = extractLibraries ? extractedLibrary(a, file) : null;
+			if (extracted != null) {
+				// Rascal files come from the folder, classes from the jar behind it
+				libs.add(extracted);
+			}
 
 			libs.add(file);
 		}
@@ -277,6 +395,156 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 		return libs;
 	}
 
+	/**
+	 * The other projects of the current multi-module build, by groupId:artifactId:version
+	 */
+	private Map<String, MavenProject> reactorProjects() {
+		if (!preferReactorOutputs || session == null || session.getProjects() == null) {
+			return Map.of();
+		}
+
+		return session.getProjects().stream()
+			.filter(p -> p != project)
+			.collect(Collectors.toMap(p -> p.getGroupId() + ":" + p.getArtifactId() + ":" + p.getVersion(), p -> p, (a, b) -> a));
+	}
+
+	/**
+	 * Every tool run would otherwise open and inflate the same entries of the same jars again.
+	 * Instead, the Rascal sources and .tpl files of Rascal libraries are extracted once into the cache
+	 * and the tools read (and map) them from there. Classes stay in the jar, so callers must keep
+	 * the jar on the library path behind the folder. Jars without Rascal content are not extracted.
+	 *
+	 * Downloaded jars are keyed by the checksum that the local repository keeps next to them, and
+	 * their entries never change. Jars without a checksum (locally installed SNAPSHOTs and reactor jars)
+	 * change under the same coordinates with every build, so they are keyed by their coordinates, and
+	 * their entry is replaced when the size or time stamp of the jar changed.
+	 *
+	 * @return the folder with the extracted files, or null if the jar is not a Rascal library
+	 */
+	protected File extractedLibrary(Artifact artifact, File jar) throws IOException {
+		if (!jar.isFile() || !jar.getName().endsWith(".jar")) {
+			return null;
+		}
+
+		Path libraries = cacheDirectory.toPath().resolve("libs");
+		String checksum = checksum(jar);
+		Path folder;
+		Path local = null;
+
+		if (checksum != null) {
+			folder = libraries.resolve(checksum);
+		}
+		else {
+			String classifier = artifact.getClassifier() == null || artifact.getClassifier().isEmpty() ? "" : "-" + artifact.getClassifier();
+			local = libraries.resolve("local").resolve(artifact.getGroupId()).resolve(artifact.getArtifactId()).resolve(artifact.getBaseVersion() + classifier);
+			folder = local.resolve(stamp(jar));
+		}
+
+		Path notRascal = folder.resolveSibling(folder.getFileName() + ".none");
+
+		if (Files.isDirectory(folder)) {
+			return folder.toFile();
+		}
+
+		if (Files.exists(notRascal)) {
+			return null;
+		}
+
+		Files.createDirectories(folder.getParent());
+
+		try (ZipFile zip = new ZipFile(jar)) {
+			if (zip.getEntry("META-INF/RASCAL.MF") == null) {
+				// remember this, so we do not have to open the jar again
+				Files.write(notRascal, new byte[0]);
+				if (local != null) {
+					evictOthers(local, notRascal);
+				}
+				return null;
+			}
+
+			Path tmp = Files.createTempDirectory(libraries, "tmp-");
+
+			for (ZipEntry entry : Collections.list(zip.entries())) {
+				String name = entry.getName();
+
+				if (entry.isDirectory() || !(name.endsWith(".rsc") || name.endsWith(".tpl") || name.startsWith("META-INF/"))) {
+					continue;
+				}
+
+				Path target = tmp.resolve(name).normalize();
+
+				if (!target.startsWith(tmp)) {
+					deleteDirectory(tmp);
+					throw new IOException("Entry " + name + " of " + jar + " points outside of the library");
+				}
+
+				Files.createDirectories(target.getParent());
+				try (InputStream in = zip.getInputStream(entry)) {
+					Files.copy(in, target);
+				}
+			}
+
+			getLog().info("Extracted " + jar.getName() + " into " + folder);
+			publishCacheEntry(tmp, folder);
+		}
+
+		if (local != null) {
+			evictOthers(local, folder);
+		}
+
+		return folder.toFile();
+	}
+
+	/**
+	 * The checksum that the local repository keeps next to a downloaded jar, or null
+	 */
+	private static String checksum(File jar) throws IOException {
+		Path sha1 = Path.of(jar.getPath() + ".sha1");
+
+		if (Files.isRegularFile(sha1)) {
+			String[] words = new String(Files.readAllBytes(sha1), StandardCharsets.US_ASCII).trim().split("\\s+");
+
+			if (words.length > 0 && words[0].matches("[0-9a-fA-F]{40}")) {
+				return words[0].toLowerCase();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * The location, size and time stamp of a jar stand in for its content
+	 */
+	private String stamp(File jar) {
+		MessageDigest digest = newDigest();
+		digest.update((jar.getAbsolutePath() + ":" + jar.length() + ":" + jar.lastModified()).getBytes(StandardCharsets.UTF_8));
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Removes the entries of earlier versions of a locally built jar, such that there is at most one per coordinates
+	 */
+	private void evictOthers(Path local, Path current) {
+		try (Stream<Path> entries = Files.list(local)) {
+			for (Path entry : entries.collect(Collectors.toList())) {
+				if (entry.equals(current)) {
+					continue;
+				}
+
+				if (Files.isDirectory(entry)) {
+					deleteDirectory(entry);
+				}
+				else {
+					Files.deleteIfExists(entry);
+				}
+			}
+		}
+		catch (IOException e) {
+			// another build may be replacing the same entry; the next one cleans up
+			getLog().debug("Could not evict old entries in " + local, e);
+		}
+	}
+
 	protected final ArtifactVersion getReferenceRascalVersion() {
 		return new DefaultArtifactVersion("0.43.0-RC10");
 	}
@@ -306,6 +574,124 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 	}
 
 	protected Process runMain(boolean verbose, String moreClasspath, List<File> srcs, List<File> ignores, List<File> libs, List<File> resources, File bin, Map<String, String> extraParameters, boolean inheritIO) throws IOException {
+		Path recording = null;
+		if (profile) {
+			Path folder = Path.of(project.getBuild().getDirectory());
+			Files.createDirectories(folder);
+			recording = Files.createTempFile(folder, "rascal-" + skipTag + "-", ".jfr");
+		}
+
+		List<String> command = buildCommand(verbose, moreClasspath, srcs, ignores, libs, resources, bin, extraParameters, recording);
+
+		getLog().debug("Java exec: " + command.get(0));
+		getLog().debug("Starting process:\n\t java " +
+			command.stream()
+			.skip(1)
+			.map(s -> s.replace("\n", "\\\\n"))
+			.map(s -> "'" + s + "'")
+			.collect(Collectors.joining(" ")));
+
+		// the command line can be longer than the OS allows (think of long -modules or -ignores lists),
+		// so all arguments go via an argument file which the java launcher expands for us.
+		Path argumentFile = writeArgumentFile(command.subList(1, command.size()));
+
+		ProcessBuilder p = new ProcessBuilder(command.get(0), "@" + argumentFile);
+		p.directory(project.getBasedir());
+
+		// to notice that the process stopped printing, or to read what it prints, we have to relay its output ourselves
+		boolean watchOutput = inheritIO && !isInteractive() && watchesOutput();
+		boolean relayOutput = inheritIO && !isInteractive() && (watchOutput || getTimeout("progressTimeout", progressTimeout) > 0);
+
+		if (relayOutput) {
+			p.redirectInput(Redirect.INHERIT);
+			p.redirectError(Redirect.INHERIT);
+		}
+		else if (inheritIO) {
+			// everything merges with the current process' streams
+			p.inheritIO();
+		}
+		else {
+			// stderr goes to stdout as well
+			p.redirectErrorStream(true);
+		}
+
+		Process runningProcess = p.start();
+
+		if (!getLog().isDebugEnabled()) {
+			runningProcess.onExit().thenRun(() -> argumentFile.toFile().delete());
+		}
+
+		if (recording != null) {
+			recordings.put(runningProcess, recording);
+		}
+
+		if (relayOutput) {
+			AtomicLong last = new AtomicLong(System.currentTimeMillis());
+			lastOutput.put(runningProcess, last);
+
+			Thread relay = new Thread(() -> {
+				byte[] buffer = new byte[8192];
+				ByteArrayOutputStream line = new ByteArrayOutputStream();
+				int read;
+
+				try (InputStream in = runningProcess.getInputStream()) {
+					while ((read = in.read(buffer)) != -1) {
+						last.set(System.currentTimeMillis());
+						System.out.write(buffer, 0, read);
+						System.out.flush();
+
+						for (int i = 0; watchOutput && i < read; i++) {
+							if (buffer[i] == '\n') {
+								outputLine(line.toString(Charset.defaultCharset()).replace("\r", ""));
+								line.reset();
+							}
+							else {
+								line.write(buffer[i]);
+							}
+						}
+					}
+				}
+				catch (IOException e) {
+					// the process is gone
+				}
+
+				if (line.size() > 0) {
+					outputLine(line.toString(Charset.defaultCharset()));
+				}
+			}, "rascal-" + skipTag + "-output");
+			relay.setDaemon(true);
+			relay.start();
+			relays.put(runningProcess, relay);
+		}
+
+		// try to clean up the forked process as nicely as possible if we get killed prematurely ourselves
+		Thread cleanup = new Thread(() -> {
+			if (runningProcess.isAlive()) {
+				runningProcess.destroy();
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(cleanup);
+
+		// and do not let the hooks pile up in long reactor builds
+		runningProcess.onExit().thenRun(() -> {
+			lastOutput.remove(runningProcess);
+
+			try {
+				Runtime.getRuntime().removeShutdownHook(cleanup);
+			}
+			catch (IllegalStateException e) {
+				// we are shutting down already
+			}
+		});
+
+		return runningProcess;
+	}
+
+	/**
+	 * The full command line of a forked tool; the first element is the java executable.
+	 * When `recording` is not null the tool records itself with Java Flight Recorder into that file.
+	 */
+	protected List<String> buildCommand(boolean verbose, String moreClasspath, List<File> srcs, List<File> ignores, List<File> libs, List<File> resources, File bin, Map<String, String> extraParameters, Path recording) {
 		String javaHome = System.getProperty("java.home");
         String javaBin = javaHome + File.separator + "bin" + File.separator + "java";
 
@@ -320,6 +706,11 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 		});
 
 		command.add("-Xmx" + memory);
+		command.addAll(extraJvmArguments);
+
+		if (recording != null) {
+			command.add("-XX:StartFlightRecording=settings=profile,dumponexit=true,filename=" + recording);
+		}
 
 		// we put the entire pathConfig on the commandline, and finally the todoList for compilation.
 		command.add("-cp");
@@ -338,85 +729,276 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 		}
 
 		if (!mainClass.endsWith("RascalShell")) {
-			if (!srcs.isEmpty()) {
-				command.add("-srcs");
-				command.add(files(srcs));
-			}
+			command.addAll(toolArguments(verbose, srcs, ignores, libs, resources, bin, extraParameters));
+		}
 
-			if (!resources.isEmpty()) {
-				command.add("-resources");
-				command.add(files(resources));
-			}
+		assert command.stream().map(Objects::nonNull).allMatch(b -> b) : "command had a null parameter";
+
+		getLog().debug("Built a command line of " + command.size() + " arguments and " + command.stream().mapToInt(String::length).sum() + " characters");
+
+		return command;
+	}
+
+	/**
+	 * The PathConfig and the other parameters of a Rascal tool, as command line arguments
+	 */
+	protected List<String> toolArguments(boolean verbose, List<File> srcs, List<File> ignores, List<File> libs, List<File> resources, File bin, Map<String, String> extraParameters) {
+		List<String> arguments = new LinkedList<>();
+
+		if (!srcs.isEmpty()) {
+			arguments.add("-srcs");
+			arguments.add(files(srcs));
+		}
+
+		if (!resources.isEmpty()) {
+			arguments.add("-resources");
+			arguments.add(files(resources));
+		}
+
+		if (!ignores.isEmpty()) {
+			arguments.add("-ignores");
+			arguments.add(files(ignores));
+		}
 
-			if (!ignores.isEmpty()) {
-				command.add("-ignores");
-				command.add(files(ignores));
+		if (!libs.isEmpty()) {
+			arguments.add("-libs");
+			arguments.add(files(libs));
+		}
+
+		arguments.add("-bin");
+		assert bin != null : "bin is null";
+		arguments.add(bin.toString());
+
+		for (Entry<String, String> e : extraParameters.entrySet()) {
+			arguments.add("-" + e.getKey());
+			assert e.getValue() != null : "value with " + e.getKey() + " is null in extraParameters";
+			arguments.add(e.getValue());
+		}
+
+		if (verbose) {
+			arguments.add("-verbose");
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * Interactive tools wait for their user, which is not a hang.
+	 */
+	protected boolean isInteractive() {
+		return false;
+	}
+
+	/**
+	 * Goals that want to read the output of their tool, line by line in {@link #outputLine(String)}, return true.
+	 * The output is still printed as well.
+	 */
+	protected boolean watchesOutput() {
+		return false;
+	}
+
+	/**
+	 * Receives every line that a forked tool prints, when {@link #watchesOutput()} is true.
+	 * It is called from the thread that relays the output; {@link #waitFor(Process)} waits for the last line.
+	 */
+	protected void outputLine(String line) {
+	}
+
+	/**
+	 * A `-Drascal.<goal>.<name>` system property overrides the configured timeout for a single goal.
+	 */
+	protected long getTimeout(String name, long configured) {
+		String override = System.getProperty("rascal." + skipTag + "." + name);
+		return override != null ? Long.parseLong(override) : configured;
+	}
+
+	/**
+	 * Waits for the forked tool to finish, and summarizes its profile if there is one. If it runs out of time, or makes no progress
+	 * (prints nothing and uses no CPU) for too long, thread dumps and a short flight recording
+	 * are written to the build directory and the process is killed.
+	 */
+	protected int waitFor(Process process) throws InterruptedException, MojoExecutionException {
+		int exitCode;
+
+		try {
+			exitCode = watch(process);
+		}
+		finally {
+			drainOutput(process);
+		}
+
+		Path recording = recordings.remove(process);
+
+		if (recording != null) {
+			try {
+				ProfileSummary.log(recording, getLog());
+			}
+			catch (IOException e) {
+				getLog().warn("Could not read flight recording " + recording, e);
 			}
+		}
+
+		return exitCode;
+	}
+
+	/**
+	 * Waits, for a bounded time, until the last output of the process has been relayed
+	 */
+	private void drainOutput(Process process) throws InterruptedException {
+		Thread relay = relays.remove(process);
 
-			if (!libs.isEmpty()) {
-				command.add("-libs");
-				command.add(files(libs));
+		if (relay != null) {
+			relay.join(RELAY_DRAIN_MILLIS);
+
+			if (relay.isAlive()) {
+				getLog().warn("The output of " + mainClass + " was still open " + RELAY_DRAIN_MILLIS / 1000 + " seconds after it ended; the rest of it is not shown");
 			}
+		}
+	}
 
-			command.add("-bin");
-			assert bin != null : "bin is null";
-			command.add(bin.toString());
+	private int watch(Process process) throws InterruptedException, MojoExecutionException {
+		long total = getTimeout("timeout", timeout) * 1000;
+		long idle = getTimeout("progressTimeout", progressTimeout) * 1000;
+
+		if (isInteractive() || (total <= 0 && idle <= 0)) {
+			return process.waitFor();
+		}
 
+		long started = System.currentTimeMillis();
+		long lastProgress = started;
+		long lastCpu = cpuTime(process);
 
-			for (Entry<String, String> e : extraParameters.entrySet()) {
-				command.add("-" + e.getKey());
-				assert e.getValue() != null : "value with " + e.getKey() + " is null in extraParameters";
-				command.add(e.getValue());
+		while (!process.waitFor(1, TimeUnit.SECONDS)) {
+			long now = System.currentTimeMillis();
+			long cpu = cpuTime(process);
+
+			// some CPU is always used by the JIT and GC threads; a working tool uses a lot more
+			if (cpu - lastCpu > 100) {
+				lastProgress = now;
+			}
+			lastCpu = cpu;
+
+			AtomicLong output = lastOutput.get(process);
+			if (output != null) {
+				lastProgress = Math.max(lastProgress, output.get());
 			}
 
-			if (verbose) {
-				command.add("-verbose");
+			if (total > 0 && now - started > total) {
+				killHungProcess(process, "did not finish within " + total / 1000 + " seconds");
+			}
+			else if (idle > 0 && now - lastProgress > idle) {
+				killHungProcess(process, "made no progress for " + idle / 1000 + " seconds");
 			}
 		}
 
-		assert command.stream().map(Objects::nonNull).allMatch(b -> b) : "command had a null parameter";
+		return process.exitValue();
+	}
 
-		getLog().debug("Java exec: " + command.get(0));
-		getLog().debug("Starting process:\n\t java " +
-			command.stream()
-			.skip(1)
-			.map(s -> s.replace("\n", "\\\\n"))
-			.map(s -> "'" + s + "'")
-			.collect(Collectors.joining(" ")));
+	/**
+	 * Total CPU time in milliseconds of the process and the worker processes it started itself
+	 */
+	private long cpuTime(Process process) {
+		return Stream.concat(Stream.of(process.toHandle()), process.descendants())
+			.map(h -> h.info().totalCpuDuration().map(Duration::toMillis).orElse(0L))
+			.reduce(0L, Long::sum);
+	}
 
-		ProcessBuilder p = new ProcessBuilder(command);
-		p.directory(project.getBasedir());
+	private void killHungProcess(Process process, String reason) throws MojoExecutionException {
+		getLog().error(mainClass + " " + reason + "; collecting diagnostics before killing it");
+
+		List<ProcessHandle> processes = Stream.concat(Stream.of(process.toHandle()), process.descendants())
+			.collect(Collectors.toList());
+
+		Path folder = Path.of(project.getBuild().getDirectory());
+		Path jcmd = Path.of(System.getProperty("java.home"), "bin", "jcmd");
+
+		for (ProcessHandle h : processes) {
+			String prefix = "rascal-" + skipTag + "-" + h.pid();
+			Path threads = folder.resolve(prefix + "-threads.txt");
+
+			try {
+				Files.createDirectories(folder);
+				new ProcessBuilder(jcmd.toString(), Long.toString(h.pid()), "Thread.print", "-l")
+					.redirectErrorStream(true)
+					.redirectOutput(threads.toFile())
+					.start()
+					.waitFor(30, TimeUnit.SECONDS);
+				getLog().error("Thread dump written to " + threads);
+
+				new ProcessBuilder(jcmd.toString(), Long.toString(h.pid()), "JFR.start", "duration=" + HANG_RECORDING_SECONDS + "s", "filename=" + folder.resolve(prefix + "-hang.jfr"))
+					.redirectErrorStream(true)
+					.redirectOutput(Redirect.DISCARD)
+					.start()
+					.waitFor(30, TimeUnit.SECONDS);
+			}
+			catch (IOException e) {
+				getLog().warn("Could not run " + jcmd + " to collect diagnostics", e);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 
-		if (inheritIO) {
-			// everything merges with the current process' streams
-			p.inheritIO();
+		try {
+			// the recordings are written when they end
+			Thread.sleep((HANG_RECORDING_SECONDS + 2) * 1000L);
+
+			processes.forEach(ProcessHandle::destroy);
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				processes.forEach(ProcessHandle::destroyForcibly);
+			}
 		}
-		else {
-			// stderr goes to stdout as well
-			p.redirectErrorStream(true);
+		catch (InterruptedException e) {
+			processes.forEach(ProcessHandle::destroyForcibly);
+			Thread.currentThread().interrupt();
 		}
 
-		Process runningProcess = p.start();
+		throw new MojoExecutionException(mainClass + " " + reason + " and was killed. See " + folder + " for thread dumps and flight recordings.");
+	}
 
-		// try to clean up the forked process as nicely as possible if we get killed prematurely ourselves
-		if (runningProcess != null) {
-			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-				if (runningProcess.isAlive()) {
-					runningProcess.destroy();
-				}
-			}));
-		}
+	/**
+	 * Writes the arguments in the `@argfiles` format of the java launcher: one quoted argument per line.
+	 */
+	private Path writeArgumentFile(List<String> arguments) throws IOException {
+		Path folder = Path.of(project.getBuild().getDirectory());
+		Files.createDirectories(folder);
+		Path argumentFile = Files.createTempFile(folder, "rascal-" + skipTag + "-", ".args");
 
-		return runningProcess;
+		writeArgumentFile(argumentFile, arguments);
+		getLog().debug("Arguments were written to " + argumentFile);
+
+		return argumentFile;
+	}
+
+	static void writeArgumentFile(Path argumentFile, List<String> arguments) throws IOException {
+		List<String> lines = arguments.stream()
+			.map(a -> "\"" + a
+				.replace("\\", "\\\\")
+				.replace("\"", "\\\"")
+				.replace("\n", "\\n")
+				.replace("\r", "\\r")
+				+ "\"")
+			.collect(Collectors.toList());
+
+		// the launcher reads the file with the platform encoding for command line arguments
+		String encoding = System.getProperty("sun.jnu.encoding");
+		Files.write(argumentFile, lines, encoding != null ? Charset.forName(encoding) : Charset.defaultCharset());
 	}
 
 	protected List<File> allRascalSourceFiles(List<File> sourceLocs, List<File> ignoredLocs) {
+		long start = System.currentTimeMillis();
 		var result = new LinkedList<File>();
-		allRascalSourceFiles(sourceLocs.stream().toArray(File[]::new), ignoredLocs, result);
+		allRascalSourceFiles(sourceLocs.stream().toArray(File[]::new), new HashSet<>(ignoredLocs), result);
+		getLog().debug("Found " + result.size() + " Rascal source files in " + (System.currentTimeMillis() - start) + "ms");
 		return result;
 	}
 
-	private void allRascalSourceFiles(File[] sourceLocs, List<File> ignoredLocs, List<File> result) {
+	private void allRascalSourceFiles(File[] sourceLocs, Set<File> ignoredLocs, List<File> result) {
+		if (sourceLocs == null) {
+			// listFiles returns null on I/O errors
+			return;
+		}
+
 		for (File f : sourceLocs) {
 			if (!ignoredLocs.contains(f)) {
 				if (f.getName().endsWith(".rsc")) {
@@ -430,7 +1012,10 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 	}
 
 	protected List<File> getTodoList(File binLoc, List<File> srcLocs, List<File> ignoredLocs, String dirtyExtension, String binaryExtension, String binaryPrefix) throws InclusionScanException, URISyntaxException {
-		StaleSourceScanner scanner = new StaleSourceScanner(100);
+		long start = System.currentTimeMillis();
+
+		// only visit the files we are interested in, instead of every file in the source folders
+		StaleSourceScanner scanner = new StaleSourceScanner(100, Set.of("**/*." + dirtyExtension), Set.of());
 		scanner.addSourceMapping(new SourceMapping() {
 
 			@Override
@@ -452,26 +1037,227 @@ public abstract class AbstractRascalMojo extends AbstractMojo
 		binLoc = new File(binLoc, binaryPrefix);
 
 		Set<File> staleSources = new HashSet<>();
-		for (File src : srcs) {
+		for (File src : srcLocs) {
 			staleSources.addAll(scanner.getIncludedSources(src, binLoc));
 		}
 
+		Set<Path> ignored = ignoredLocs.stream()
+			.map(l -> l.toPath().normalize())
+			.collect(Collectors.toSet());
+
 		List<File> filteredStaleSources = new LinkedList<>();
 
 		for (File file : staleSources) {
-			if (ignoredLocs.stream().noneMatch(l -> isIgnoredBy(l, file))) {
+			if (!isIgnoredBy(ignored, file)) {
 				filteredStaleSources.add(file);
 			}
 		}
 
+		getLog().debug("Found " + filteredStaleSources.size() + " stale Rascal modules in " + (System.currentTimeMillis() - start) + "ms");
+
 		return filteredStaleSources;
 	}
 
-	protected boolean isIgnoredBy(File prefix, File loc) {
-		String prefixPath = prefix.toString();
-		String locPath = loc.toString();
+	/**
+	 * A file is ignored when it is, or is nested in, one of the ignored (normalized) locations.
+	 * Whole path segments are compared, such that `src/lib` does not ignore `src/library`.
+	 * Walks up from the file rather than trying every ignored prefix, so the cost depends on
+	 * the depth of the file and not on the number of ignored locations.
+	 */
+	protected boolean isIgnoredBy(Set<Path> ignored, File file) {
+		for (Path p = file.toPath().normalize(); p != null; p = p.getParent()) {
+			if (ignored.contains(p)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Collects a stamp (last modification time and size) for every file under the given roots.
+	 * Comparing two of these is a cheap way to find out that nothing changed in between two runs.
+	 */
+	protected Properties fileStamps(List<File> roots) throws IOException {
+		Properties stamps = new Properties();
+
+		for (File root : roots) {
+			if (!root.exists()) {
+				continue;
+			}
+
+			Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					stamps.setProperty(file.toString(), attrs.lastModifiedTime().toMillis() + ":" + attrs.size());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+
+		return stamps;
+	}
+
+	protected MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every JVM is required to implement SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Feeds the relative paths and contents of all files under the given roots to the digest, in a stable order.
+	 */
+	protected void digestFiles(MessageDigest digest, List<File> roots) throws IOException {
+		byte[] buffer = new byte[8192];
+
+		for (File root : roots) {
+			if (!root.exists()) {
+				continue;
+			}
+
+			List<Path> files = new LinkedList<>();
+			Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					files.add(file);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			files.sort(null);
+
+			for (Path file : files) {
+				// relative paths, such that the same sources in another checkout have the same digest
+				Path name = root.isDirectory() ? root.toPath().relativize(file) : file.getFileName();
+				digest.update(name.toString().getBytes(StandardCharsets.UTF_8));
+
+				try (InputStream in = Files.newInputStream(file)) {
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						digest.update(buffer, 0, read);
+					}
+				}
+			}
+		}
+	}
+
+	protected static String hex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			result.append(String.format("%02x", b));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Copies a directory tree, overwriting files that already exist at the target.
+	 * The copies are new files, so they are newer than the sources they were generated from.
+	 */
+	protected void copyDirectory(Path from, Path to) throws IOException {
+		copyDirectory(from, to, f -> true);
+	}
+
+	protected void copyDirectory(Path from, Path to, Predicate<Path> include) throws IOException {
+		Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (include.test(file)) {
+					Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Restores the files of `from` into `to`: files whose content differs are copied, and identical
+	 * files are not touched so that their time stamps keep downstream incremental tools quiet. Of the
+	 * `written` files (relative to `to`, written there by an earlier run) those that `from` does not have
+	 * are deleted; any other file in `to` is left alone.
+	 *
+	 * @return the number of files that were copied or deleted
+	 */
+	protected int syncDirectory(Path from, Path to, Set<String> written) throws IOException {
+		int[] changed = { 0 };
+
+		Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Path target = to.resolve(from.relativize(file).toString());
+				if (!sameContent(file, attrs, target)) {
+					Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+					changed[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		for (String file : written) {
+			if (!Files.exists(from.resolve(file)) && Files.deleteIfExists(to.resolve(file))) {
+				changed[0]++;
+			}
+		}
+
+		return changed[0];
+	}
+
+	private static boolean sameContent(Path file, BasicFileAttributes attrs, Path target) throws IOException {
+		return Files.isRegularFile(target)
+			&& Files.size(target) == attrs.size()
+			&& Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(target));
+	}
+
+	/**
+	 * Publishes a fully written temporary directory as a cache entry. If another build
+	 * beat us to it, their entry is kept and ours is thrown away.
+	 */
+	protected void publishCacheEntry(Path tmp, Path entry) throws IOException {
+		try {
+			Files.createDirectories(entry.getParent());
+			Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (FileSystemException e) {
+			// on Linux a lost race is a plain "Directory not empty", not a DirectoryNotEmptyException
+			if (!Files.isDirectory(entry)) {
+				throw e;
+			}
+			deleteDirectory(tmp);
+		}
+	}
+
+	protected void deleteDirectory(Path dir) throws IOException {
+		if (!Files.exists(dir)) {
+			return;
+		}
 
-		return locPath.startsWith(prefixPath);
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+				Files.delete(d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
 	}
 
 	@FunctionalInterface
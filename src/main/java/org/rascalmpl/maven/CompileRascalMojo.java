@@ -12,9 +12,39 @@
  */
 package org.rascalmpl.maven;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -30,6 +60,19 @@ import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
  * This mojo starts a process to run the main function of the compiler written in Rascal.
  * When the todo lists is long and there are cores availaable, multiple processes
  * are started to divide the work evenly.
+ *
+ * With `workers` (host:port addresses of running `rascal:worker` goals) the todo list is split
+ * into clusters of modules that do not import each other, and the clusters are compiled
+ * on the workers at the same time. The workers must see the sources and libraries at the same
+ * paths as this build (the same machine, identical checkouts, or a shared mount). A worker does
+ * not see `bin`: the outputs of the up-to-date modules of its clusters are sent along with the job,
+ * so it only compiles what is stale here, and only the files it wrote come back over the connection.
+ *
+ * When compiling Rascal itself with the bootstrap release, the outputs of each successful
+ * compilation are cached, keyed by the bootstrap version, the library sources, the libraries and
+ * resources, the keys of the stages that ran before it in the same build, and the options. A later
+ * bootstrap build of the same sources restores them instead of compiling again. Stages compiled with
+ * `errorsAsWarnings` are not cached.
  */
 @Mojo(name="compile", inheritByDefault=false, defaultPhase = LifecyclePhase.COMPILE, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class CompileRascalMojo extends AbstractRascalMojo
@@ -73,6 +116,23 @@ public class CompileRascalMojo extends AbstractRascalMojo
 	@Parameter(property="warningsAsErrors", required=false, defaultValue="false")
 	private boolean warningsAsErrors;
 
+	@Parameter(property = "workers", required = false)
+	private List<String> workers;
+
+	@Parameter(property = "workerToken", required = false, defaultValue = "")
+	private String workerToken;
+
+	private static final Pattern IMPORT = Pattern.compile("^\\s*(?:import|extend)\\s+([\\w:\\\\]+)\\s*;", Pattern.MULTILINE);
+
+	private static final String BOOTSTRAP_STAGES = "org.rascalmpl.maven.bootstrapStages";
+
+	private List<File> todoList;
+
+	/**
+	 * Union-find of the import graph of all local modules, filled by {@link #independentClusters(List)}
+	 */
+	private final Map<File, File> components = new HashMap<>();
+	private final List<File> localModules = new LinkedList<>();
 
 
 	public CompileRascalMojo() {
@@ -82,7 +142,8 @@ public class CompileRascalMojo extends AbstractRascalMojo
 	@Override
 	protected void setExtraParameters() {
 		try {
-			extraParameters.put("modules", files(getTodoList(bin, srcs, ignores, "rsc", "tpl", "$")));
+			todoList = getTodoList(bin, srcs, ignores, "rsc", "tpl", "$");
+			extraParameters.put("modules", files(todoList));
 			extraParameters.put("parallel", Boolean.toString(parallel));
 			extraParameters.put("parallelMax", Integer.toString(parallelMax));
 			extraParameters.put("parallelPreChecks", files(parallelPreChecks));
@@ -99,4 +160,309 @@ public class CompileRascalMojo extends AbstractRascalMojo
 			throw new RuntimeException(e);
 		}
 	}
+
+	@Override
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		if (!isRascalProject()) {
+			return compile();
+		}
+
+		// bootstrapping: the standard library only has to be compiled again when it changed
+		String key = bootstrapKey();
+		stagesOfThisBuild().add(key);
+
+		if (todoList.isEmpty()) {
+			return compile();
+		}
+
+		Path stages = cacheDirectory.toPath().resolve("bootstrap");
+		Path entry = stages.resolve(key);
+
+		// bin is shared by all stages, and the key only covers the sources of this one
+		Predicate<Path> ofThisStage = compiledFrom(allRascalSourceFiles(srcs, ignores));
+
+		if (Files.isDirectory(entry)) {
+			getLog().info("Restoring bootstrap stage compiled with rascal-" + bootstrapRascalVersion + " from " + entry);
+			copyDirectory(entry, bin.toPath(), f -> ofThisStage.test(entry.relativize(f)));
+			return 0;
+		}
+
+		int exitCode = compile();
+
+		// with errorsAsWarnings a zero exit code does not mean the outputs are sound
+		if (exitCode == 0 && !errorsAsWarnings) {
+			Files.createDirectories(stages);
+			Path tmp = Files.createTempDirectory(stages, "tmp-");
+			copyDirectory(bin.toPath(), tmp, f -> ofThisStage.test(bin.toPath().relativize(f)));
+			publishCacheEntry(tmp, entry);
+		}
+
+		return exitCode;
+	}
+
+	/**
+	 * The keys of the bootstrap stages that ran before this one in the current build, in order.
+	 * Their outputs are in the shared bin, where this stage can import them.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> stagesOfThisBuild() {
+		List<String> stages = (List<String>) project.getContextValue(BOOTSTRAP_STAGES);
+
+		if (stages == null) {
+			stages = new LinkedList<>();
+			project.setContextValue(BOOTSTRAP_STAGES, stages);
+		}
+
+		return stages;
+	}
+
+	/**
+	 * The bootstrap compiler, the library sources, the libraries and resources, the earlier stages
+	 * and the compiler options determine the outputs of a bootstrap stage
+	 */
+	private String bootstrapKey() throws IOException {
+		MessageDigest digest = newDigest();
+		digest.update(bootstrapRascalVersion.getBytes(StandardCharsets.UTF_8));
+
+		for (File src : srcs) {
+			digest.update(project.getBasedir().toPath().relativize(src.toPath()).toString().getBytes(StandardCharsets.UTF_8));
+			digestFiles(digest, List.of(src));
+		}
+
+		for (File ignore : ignores) {
+			digest.update(project.getBasedir().toPath().relativize(ignore.toPath()).toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		// bin changes with every stage, what the earlier stages put there is covered by their keys
+		List<File> otherLibs = new LinkedList<>();
+		for (File lib : libs) {
+			if (!lib.toPath().startsWith(bin.toPath())) {
+				otherLibs.add(lib);
+			}
+		}
+		digest.update(new TreeMap<>(fileStamps(otherLibs)).toString().getBytes(StandardCharsets.UTF_8));
+		digestFiles(digest, resources);
+
+		for (String stage : stagesOfThisBuild()) {
+			digest.update(stage.getBytes(StandardCharsets.UTF_8));
+		}
+
+		new TreeMap<>(extraParameters).forEach((key, value) -> {
+			if (!key.equals("modules") && !key.startsWith("parallel")) {
+				digest.update((key + "=" + value).getBytes(StandardCharsets.UTF_8));
+			}
+		});
+
+		return hex(digest.digest());
+	}
+
+	private int compile() throws IOException, InterruptedException, MojoExecutionException {
+		if (workers == null || workers.isEmpty() || todoList.isEmpty()) {
+			return super.run();
+		}
+
+		List<List<File>> batches = distribute(independentClusters(todoList), workers.size());
+		getLog().info("Distributing " + todoList.size() + " modules over " + batches.size() + " workers");
+
+		ExecutorService pool = Executors.newFixedThreadPool(batches.size());
+
+		try {
+			List<Future<Integer>> results = new LinkedList<>();
+
+			for (int i = 0; i < batches.size(); i++) {
+				String worker = workers.get(i);
+				List<File> batch = batches.get(i);
+				results.add(pool.submit(() -> compileOn(worker, batch)));
+			}
+
+			int exitCode = 0;
+			for (Future<Integer> result : results) {
+				int code = result.get();
+				if (exitCode == 0) {
+					exitCode = code;
+				}
+			}
+
+			return exitCode;
+		}
+		catch (ExecutionException e) {
+			throw new MojoExecutionException("Distributed compilation failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private int compileOn(String worker, List<File> batch) throws IOException, InterruptedException, MojoExecutionException {
+		Map<String, String> parameters = new HashMap<>(extraParameters);
+		parameters.put("modules", files(batch));
+
+		try {
+			getLog().info("Sending " + batch.size() + " modules to worker " + worker);
+			WorkerProtocol.Job job = new WorkerProtocol.Job(
+				workerToken,
+				getRascalRuntime().getFileName().toString(),
+				project.getBasedir().toString(),
+				toolArguments(verbose, srcs, ignores, libs, resources, bin, parameters));
+			Path output = bin.toPath().toAbsolutePath().normalize();
+			return WorkerProtocol.submit(worker, job, upToDateOutputs(batch, output), System.out, output);
+		}
+		catch (ConnectException e) {
+			getLog().warn("Worker " + worker + " is not reachable; compiling its " + batch.size() + " modules locally");
+			return waitFor(runMain(verbose, "", srcs, ignores, libs, resources, bin, parameters, true));
+		}
+		catch (SocketException | SocketTimeoutException | EOFException e) {
+			getLog().warn("Lost worker " + worker + " (" + e.getMessage() + "); compiling its " + batch.size() + " modules locally");
+			return waitFor(runMain(verbose, "", srcs, ignores, libs, resources, bin, parameters, true));
+		}
+		catch (WorkerProtocol.Rejected e) {
+			getLog().warn("Worker " + worker + " rejected the job (" + e.getMessage() + "); compiling its " + batch.size() + " modules locally");
+			return waitFor(runMain(verbose, "", srcs, ignores, libs, resources, bin, parameters, true));
+		}
+	}
+
+	/**
+	 * Groups the todo list by the connected components of the import graph of all local modules.
+	 * Modules in different components can not import each other, not even indirectly, so the
+	 * compilers of different clusters never write the same files.
+	 */
+	private Collection<List<File>> independentClusters(List<File> todo) throws IOException {
+		Map<String, File> modules = new HashMap<>();
+		for (File src : srcs) {
+			// ignored modules can still be imported, so they are part of the graph
+			for (File file : allRascalSourceFiles(List.of(src), List.of())) {
+				modules.put(moduleName(src, file), file);
+			}
+		}
+		localModules.addAll(modules.values());
+
+		for (File file : modules.values()) {
+			String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			Matcher m = IMPORT.matcher(source);
+
+			while (m.find()) {
+				File imported = modules.get(m.group(1).replace("\\", ""));
+				if (imported != null) {
+					components.put(component(components, file), component(components, imported));
+				}
+			}
+		}
+
+		Map<File, List<File>> clusters = new LinkedHashMap<>();
+		for (File file : todo) {
+			clusters.computeIfAbsent(component(components, file), k -> new LinkedList<>()).add(file);
+		}
+
+		return clusters.values();
+	}
+
+	/**
+	 * The files in bin of the modules that are in the same clusters as the batch, but not in the batch itself.
+	 * They were up-to-date here, so the worker gets them instead of compiling them again.
+	 */
+	private List<Path> upToDateOutputs(List<File> batch, Path output) throws IOException {
+		Set<File> stale = new HashSet<>(batch);
+		Set<File> clusters = new HashSet<>();
+		for (File file : batch) {
+			clusters.add(component(components, file));
+		}
+
+		List<File> upToDate = new LinkedList<>();
+		for (File file : localModules) {
+			if (!stale.contains(file) && clusters.contains(component(components, file))) {
+				upToDate.add(file);
+			}
+		}
+
+		if (upToDate.isEmpty() || !Files.isDirectory(output)) {
+			return List.of();
+		}
+
+		Predicate<Path> compiled = compiledFrom(upToDate);
+		try (Stream<Path> files = Files.walk(output)) {
+			return files
+				.filter(f -> Files.isRegularFile(f) && compiled.test(output.relativize(f)))
+				.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Union-find: the representative of the component of the file
+	 */
+	private static File component(Map<File, File> components, File file) {
+		File parent = components.getOrDefault(file, file);
+
+		if (parent.equals(file)) {
+			return file;
+		}
+
+		File root = component(components, parent);
+		components.put(file, root);
+		return root;
+	}
+
+	/**
+	 * Tests whether a path, relative to bin, is an output of the Rascal compiler for one of the given modules:
+	 * its name is `$` and the module name, possibly followed by `$` and a nested name, and its folders
+	 * are the package of the module, possibly inside one root folder of the compiler. Java classes in bin that were not generated from these modules
+	 * (and the outputs for modules of other source folders) do not pass.
+	 */
+	private Predicate<Path> compiledFrom(List<File> modules) {
+		Set<String> outputs = new HashSet<>();
+
+		for (File src : srcs) {
+			for (File module : modules) {
+				if (module.toPath().startsWith(src.toPath())) {
+					Path relative = src.toPath().relativize(module.toPath());
+					String name = relative.getFileName().toString();
+					Path parent = relative.getParent();
+					String output = "$" + name.substring(0, name.length() - ".rsc".length());
+					outputs.add(parent == null ? output : parent.toString().replace(File.separatorChar, '/') + "/" + output);
+				}
+			}
+		}
+
+		return file -> {
+			String name = file.getFileName().toString();
+
+			if (!name.startsWith("$")) {
+				return false;
+			}
+
+			int end = name.indexOf('$', 1);
+			if (end == -1) {
+				end = name.indexOf('.');
+			}
+
+			String output = (end == -1 ? name : name.substring(0, end));
+			Path parent = file.getParent();
+			String path = parent == null ? output : parent.toString().replace(File.separatorChar, '/') + "/" + output;
+
+			// the compiler may put its outputs under a folder of its own, next to the generated classes
+			int root = path.indexOf('/');
+			return outputs.contains(path) || (root != -1 && outputs.contains(path.substring(root + 1)));
+		};
+	}
+
+	private static String moduleName(File src, File file) {
+		String relative = src.toPath().relativize(file.toPath()).toString();
+		return relative.substring(0, relative.length() - ".rsc".length()).replace(File.separator, "::");
+	}
+
+	/**
+	 * Biggest clusters first, each to the worker with the least work so far
+	 */
+	private static List<List<File>> distribute(Collection<List<File>> clusters, int workers) {
+		List<List<File>> batches = new ArrayList<>();
+		for (int i = 0; i < workers; i++) {
+			batches.add(new LinkedList<>());
+		}
+
+		clusters.stream()
+			.sorted(Comparator.comparingInt(List<File>::size).reversed())
+			.forEach(c -> batches.stream().min(Comparator.comparingInt(List::size)).get().addAll(c));
+
+		batches.removeIf(List::isEmpty);
+		return batches;
+	}
 }
@@ -12,17 +12,110 @@
  */
 package org.rascalmpl.maven;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
 /**
  * Maven Goal for starting a rascal console for the current mvn project.
+ *
+ * With `classDataSharing`, the classes loaded by the first console session are dumped into a
+ * class-data sharing archive, which later sessions map into memory instead of loading and
+ * verifying all of those classes again, to reach the prompt faster. The archive is recorded
+ * in a temporary file and moved into the cache when the session ends, so consoles that record
+ * at the same time do not write the same file.
  */
 @Mojo(name="console", defaultPhase = LifecyclePhase.COMPILE, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class ConsoleRascalMojo extends AbstractRascalMojo
 {
+	@Parameter(property = "classDataSharing", required = false, defaultValue = "false")
+	private boolean classDataSharing;
+
+	/**
+	 * The archive that this session records, and where it goes when the session ends
+	 */
+	private Path recording = null;
+	private Path archive = null;
+
 	public ConsoleRascalMojo() {
 		super("org.rascalmpl.shell.RascalShell","console");
 	}
+
+	@Override
+	protected boolean isInteractive() {
+		return true;
+	}
+
+	@Override
+	protected void setExtraParameters() {
+		// dynamic archives are only supported from JDK 13 onwards
+		if (!classDataSharing || Runtime.version().feature() < 13) {
+			return;
+		}
+
+		try {
+			archive = classDataArchive();
+
+			if (Files.exists(archive)) {
+				getLog().debug("Using class-data archive " + archive);
+				extraJvmArguments.add("-XX:SharedArchiveFile=" + archive);
+			}
+			else {
+				getLog().info("Recording class-data archive " + archive + " for faster console startup next time");
+				Files.createDirectories(archive.getParent());
+				recording = Files.createTempFile(archive.getParent(), "tmp-", ".jsa");
+				extraJvmArguments.add("-XX:ArchiveClassesAtExit=" + recording);
+			}
+		}
+		catch (IOException e) {
+			getLog().warn("Class-data sharing is disabled for this console", e);
+		}
+	}
+
+	@Override
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		try {
+			return super.run();
+		}
+		finally {
+			if (recording != null) {
+				publishArchive();
+			}
+		}
+	}
+
+	/**
+	 * The JVM writes the archive when it exits; an empty file means it did not
+	 */
+	private void publishArchive() throws IOException {
+		if (Files.size(recording) == 0) {
+			Files.delete(recording);
+			return;
+		}
+
+		// if another console published one in the mean time, it is equivalent to ours
+		Files.move(recording, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * An archive is only valid for the exact JVM and class path it was recorded with.
+	 */
+	private Path classDataArchive() {
+		MessageDigest digest = newDigest();
+		digest.update(System.getProperty("java.home").getBytes(StandardCharsets.UTF_8));
+		digest.update(System.getProperty("java.vm.version").getBytes(StandardCharsets.UTF_8));
+		digest.update(getRascalRuntime().toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(Long.toString(getRascalRuntime().toFile().lastModified()).getBytes(StandardCharsets.UTF_8));
+
+		return cacheDirectory.toPath().resolve("cds").resolve("console-" + hex(digest.digest()) + ".jsa");
+	}
 }
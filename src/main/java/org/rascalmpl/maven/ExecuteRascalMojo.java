@@ -12,8 +12,24 @@
  */
 package org.rascalmpl.maven;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
 /**
@@ -21,11 +37,152 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
  *
  * When invoked it will make sure local Rascal programs are runnable and execute them.
  * The running Rascal program is assumed to have code generation as a (side) effect.
+ *
+ * When an `outputDirectory` is declared, the generated files are cached. The cache key
+ * is a fingerprint of the Rascal sources, the libraries, the main module(s) and the
+ * declared `inputs`. If nothing changed, the output directory is made equal to the cached outputs
+ * instead of running the program again: changed files are restored, files that an earlier run wrote
+ * but the cached run did not produce are removed, and files that are already identical are left alone.
+ * Only the files that the program created or changed are cached; other files in the output directory
+ * (for example of other generators) are never copied, overwritten or removed.
+ *
+ * With `mainModules` several programs are started at the same time, each in their own JVM.
  */
 @Mojo(name="exec", defaultPhase = LifecyclePhase.NONE, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class ExecuteRascalMojo extends AbstractRascalMojo
 {
+	@Parameter(property = "mainModules", required = false)
+	private List<String> mainModules;
+
+	@Parameter(property = "inputs", required = false)
+	private List<File> inputs;
+
+	@Parameter(property = "outputDirectory", required = false)
+	private File outputDirectory;
+
+	@Parameter(defaultValue = "${project.build.directory}/rascal-exec", required = true, readonly = true)
+	private File records;
+
 	public ExecuteRascalMojo() {
 		super("org.rascalmpl.shell.RascalShell", "exec");
 	}
+
+	@Override
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		if (outputDirectory == null) {
+			return runModules();
+		}
+
+		Path exec = cacheDirectory.toPath().resolve("exec");
+		Path entry = exec.resolve(fingerprint());
+		Path output = outputDirectory.toPath();
+		Set<String> written = writtenFiles();
+
+		if (Files.isDirectory(entry)) {
+			int changed = syncDirectory(entry, output, written);
+			if (changed == 0) {
+				getLog().info("Inputs did not change and " + outputDirectory + " is up-to-date");
+			}
+			else {
+				getLog().info("Inputs did not change; restored " + changed + " files in " + outputDirectory + " from " + entry);
+			}
+			storeWrittenFiles(relativeFiles(entry, fileStamps(List.of(entry.toFile()))));
+			return 0;
+		}
+
+		Properties before = fileStamps(List.of(outputDirectory));
+		int exitCode = runModules();
+		Properties after = fileStamps(List.of(outputDirectory));
+
+		// the outputs are what the programs created or changed, plus what they wrote before and left in place;
+		// other files in the output directory are not ours to cache, restore or delete
+		Set<String> outputs = new TreeSet<>();
+		for (String file : relativeFiles(output, after)) {
+			String absolute = output.resolve(file).toString();
+			if (!after.getProperty(absolute).equals(before.getProperty(absolute)) || written.contains(file)) {
+				outputs.add(file);
+			}
+		}
+		storeWrittenFiles(outputs);
+
+		if (exitCode == 0) {
+			Files.createDirectories(exec);
+			Path tmp = Files.createTempDirectory(exec, "tmp-");
+			copyDirectory(output, tmp, f -> outputs.contains(output.relativize(f).toString()));
+			publishCacheEntry(tmp, entry);
+		}
+
+		return exitCode;
+	}
+
+	private static Set<String> relativeFiles(Path root, Properties stamps) {
+		Set<String> files = new TreeSet<>();
+		for (String file : stamps.stringPropertyNames()) {
+			files.add(root.relativize(Paths.get(file)).toString());
+		}
+		return files;
+	}
+
+	/**
+	 * The files that earlier runs wrote into the output directory, relative to it
+	 */
+	private Set<String> writtenFiles() throws IOException {
+		Path record = writtenFilesRecord();
+		return Files.exists(record) ? new TreeSet<>(Files.readAllLines(record, StandardCharsets.UTF_8)) : Set.of();
+	}
+
+	private void storeWrittenFiles(Set<String> files) throws IOException {
+		Path record = writtenFilesRecord();
+		Files.createDirectories(record.getParent());
+		Files.write(record, files, StandardCharsets.UTF_8);
+	}
+
+	private Path writtenFilesRecord() {
+		String name = hex(newDigest().digest(outputDirectory.getAbsolutePath().getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+		return records.toPath().resolve(name + ".files");
+	}
+
+	private List<String> modules() {
+		return mainModules == null || mainModules.isEmpty() ? List.of(mainModule == null ? "" : mainModule) : mainModules;
+	}
+
+	/**
+	 * Starts one process per main module and waits for all of them.
+	 */
+	private int runModules() throws IOException, InterruptedException, MojoExecutionException {
+		List<Process> running = new LinkedList<>();
+
+		for (String module : modules()) {
+			// runMain reads the main module from the field
+			mainModule = module;
+			running.add(runMain(verbose, "", srcs, ignores, libs, resources, bin, extraParameters, true));
+		}
+
+		int exitCode = 0;
+		for (Process p : running) {
+			int result = waitFor(p);
+			if (exitCode == 0) {
+				exitCode = result;
+			}
+		}
+
+		return exitCode;
+	}
+
+	private String fingerprint() throws IOException {
+		MessageDigest digest = newDigest();
+
+		digest.update(String.join(",", modules()).getBytes(StandardCharsets.UTF_8));
+		digest.update(getRascalRuntime().toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(new TreeMap<>(fileStamps(libs)).toString().getBytes(StandardCharsets.UTF_8));
+		// the source folders as a whole are a safe over-approximation of the import closure of the main modules:
+		// ignored modules can still be imported, and a moved module has a different name
+		digestFiles(digest, srcs);
+
+		if (inputs != null) {
+			digestFiles(digest, inputs);
+		}
+
+		return hex(digest.digest());
+	}
 }
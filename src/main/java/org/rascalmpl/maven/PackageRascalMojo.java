@@ -12,6 +12,15 @@
  */
 package org.rascalmpl.maven;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -25,6 +34,9 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
  *    2. rewriting URI references to source files in "binaries", such as .tpl files to point
  *      to the copied source files in the jar rather than source files of the current project.
  *
+ * Packaging is incremental: a manifest with the stamps of all inputs is kept next to the
+ * relocated classes, and when none of the inputs changed since the last successful run
+ * the packager process is not started at all.
  */
 @Mojo(name="package", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class PackageRascalMojo extends AbstractRascalMojo
@@ -35,17 +47,87 @@ public class PackageRascalMojo extends AbstractRascalMojo
 	@Parameter(defaultValue = "${project.basedir}/target/relocatedClasses", property = "relocatedClasses", required = true )
     private String relocatedClasses;
 
+	@Parameter(property = "incremental", required = false, defaultValue = "true")
+	private boolean incremental;
+
+	@Parameter(defaultValue = "${project.build.directory}/rascal-package.manifest", required = true, readonly = true)
+	private File manifest;
+
 	public PackageRascalMojo() {
 		super("org.rascalmpl.shell.RascalPackage", "package");
 	}
 
 	@Override
 	public void execute() throws MojoExecutionException {
+		if (isSkipped()) {
+			super.execute();
+			return;
+		}
+
 		super.execute();
 
-		if (!isSkipped()) {
-			// after this the other plugins (like the shader) should use the new folder
-			project.getBuild().setOutputDirectory(relocatedClasses);
+		// after this the other plugins (like the shader) should use the new folder
+		project.getBuild().setOutputDirectory(relocatedClasses);
+	}
+
+	@Override
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		Properties current = currentManifest();
+
+		if (incremental && current.equals(previousManifest())) {
+			getLog().info("Rascal package in " + relocatedClasses + " is up-to-date");
+			return 0;
+		}
+
+		int exitCode = super.run();
+
+		if (exitCode == 0) {
+			storeManifest(current);
+		}
+
+		return exitCode;
+	}
+
+	/**
+	 * Stamps of everything the packager reads, plus all the arguments it gets, which is everything that
+	 * influences what it writes. The Rascal runtime is included by path (which carries its version) and
+	 * stamp, because a different packager can relocate the same inputs differently.
+	 */
+	private Properties currentManifest() throws IOException {
+		Properties stamps = fileStamps(srcs);
+		stamps.putAll(fileStamps(resources));
+		stamps.putAll(fileStamps(List.of(bin)));
+		stamps.putAll(fileStamps(List.of(getRascalRuntime().toFile())));
+		stamps.setProperty("arguments", String.join("\n", toolArguments(verbose, srcs, ignores, libs, resources, bin, extraParameters)));
+		return stamps;
+	}
+
+	private Properties previousManifest() {
+		Properties stamps = new Properties();
+
+		if (!manifest.exists() || !new File(relocatedClasses).isDirectory()) {
+			return stamps;
+		}
+
+		try (InputStream in = new FileInputStream(manifest)) {
+			stamps.load(in);
+		}
+		catch (IOException e) {
+			getLog().debug("Ignoring unreadable package manifest " + manifest, e);
+			stamps.clear();
+		}
+
+		return stamps;
+	}
+
+	private void storeManifest(Properties stamps) {
+		manifest.getParentFile().mkdirs();
+
+		try (OutputStream out = new FileOutputStream(manifest)) {
+			stamps.store(out, "inputs of the last successful rascal:package run");
+		}
+		catch (IOException e) {
+			getLog().warn("Could not write package manifest " + manifest, e);
 		}
 	}
 
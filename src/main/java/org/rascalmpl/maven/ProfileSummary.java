@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.rascalmpl.maven;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.logging.Log;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Prints the highlights of a Java Flight Recording of a forked tool to the Maven log:
+ * the hottest methods, the biggest allocation sites and how much time went into garbage collection.
+ */
+class ProfileSummary {
+	private static final int TOP = 10;
+
+	private final Map<String, Long> hotMethods = new HashMap<>();
+	private final Map<String, Long> allocations = new HashMap<>();
+	private long samples = 0;
+	private long allocated = 0;
+	private long collections = 0;
+	private Duration pauses = Duration.ZERO;
+	private Duration longestPause = Duration.ZERO;
+	private long peakHeapUsed = 0;
+
+	static void log(Path recording, Log log) throws IOException {
+		ProfileSummary summary = new ProfileSummary();
+
+		// recordings of long runs are big, so we look at one event at a time instead of loading them all
+		try (RecordingFile file = new RecordingFile(recording)) {
+			while (file.hasMoreEvents()) {
+				summary.add(file.readEvent());
+			}
+		}
+
+		summary.print(recording, log);
+	}
+
+	private void add(RecordedEvent e) {
+		switch (e.getEventType().getName()) {
+			case "jdk.ExecutionSample":
+				samples++;
+				hotMethods.merge(topFrame(e.getStackTrace()), 1L, Long::sum);
+				break;
+			case "jdk.ObjectAllocationSample":
+				addAllocation(e, e.getLong("weight"));
+				break;
+			case "jdk.ObjectAllocationInNewTLAB":
+				addAllocation(e, e.getLong("tlabSize"));
+				break;
+			case "jdk.ObjectAllocationOutsideTLAB":
+				addAllocation(e, e.getLong("allocationSize"));
+				break;
+			case "jdk.GarbageCollection":
+				collections++;
+				pauses = pauses.plus(e.getDuration("sumOfPauses"));
+				if (e.getDuration("longestPause").compareTo(longestPause) > 0) {
+					longestPause = e.getDuration("longestPause");
+				}
+				break;
+			case "jdk.GCHeapSummary":
+				peakHeapUsed = Math.max(peakHeapUsed, e.getLong("heapUsed"));
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void addAllocation(RecordedEvent e, long bytes) {
+		allocated += bytes;
+		allocations.merge(e.getClass("objectClass").getName() + " at " + topFrame(e.getStackTrace()), bytes, Long::sum);
+	}
+
+	private static String topFrame(RecordedStackTrace trace) {
+		if (trace == null || trace.getFrames().isEmpty()) {
+			return "<unknown>";
+		}
+
+		RecordedFrame frame = trace.getFrames().get(0);
+		return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+	}
+
+	private void print(Path recording, Log log) {
+		log.info("Profile of the forked process (full recording in " + recording + "):");
+
+		log.info("  Hot methods (" + samples + " samples):");
+		for (Entry<String, Long> e : top(hotMethods)) {
+			log.info(String.format("    %5.1f%%  %s", 100.0 * e.getValue() / samples, e.getKey()));
+		}
+
+		log.info("  Allocation sites (" + allocated / (1024 * 1024) + "MB sampled):");
+		for (Entry<String, Long> e : top(allocations)) {
+			log.info(String.format("    %5.1f%%  %s", 100.0 * e.getValue() / allocated, e.getKey()));
+		}
+
+		log.info(String.format("  GC: %d collections, %dms paused in total, longest pause %dms, peak heap use %dMB",
+			collections, pauses.toMillis(), longestPause.toMillis(), peakHeapUsed / (1024 * 1024)));
+	}
+
+	private static List<Entry<String, Long>> top(Map<String, Long> counts) {
+		return counts.entrySet().stream()
+			.sorted(Entry.<String, Long>comparingByValue().reversed())
+			.limit(TOP)
+			.collect(Collectors.toList());
+	}
+}
@@ -13,7 +13,21 @@
 package org.rascalmpl.maven;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -21,6 +35,12 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 
 /**
  * Maven Goal for running all tests in the current project
+ *
+ * With `failureFirst`, a history of the previous run is kept in `target`: per test module whether it failed
+ * and how long it took, as far as that can be read from the output of the tests. Test modules that failed
+ * last time, or that changed since, are run first in a separate pass, unless they take most of the time
+ * anyway. With `failFast` the build stops when that pass fails, without running the rest of the suite;
+ * `failFast` implies `failureFirst`.
  */
 @Mojo(name="test", defaultPhase = LifecyclePhase.TEST, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class TestRascalMojo extends AbstractRascalMojo
@@ -34,6 +54,20 @@ public class TestRascalMojo extends AbstractRascalMojo
 	@Parameter(property = "parallelPreChecks", required = false )
 	private List<File> parallelPreChecks;
 
+	@Parameter(property = "failureFirst", required = false, defaultValue = "false")
+	private boolean failureFirst;
+
+	@Parameter(property = "failFast", required = false, defaultValue = "false")
+	private boolean failFast;
+
+	@Parameter(defaultValue = "${project.build.directory}/rascal-test-history.properties", required = true, readonly = true)
+	private File history;
+
+	/**
+	 * The report of the test pass that is currently running
+	 */
+	private volatile TestReport report;
+
 	public TestRascalMojo() {
 		super("org.rascalmpl.shell.RascalTest","test");
 	}
@@ -46,4 +80,167 @@ public class TestRascalMojo extends AbstractRascalMojo
 		extraParameters.put("parallelMax", Integer.toString(parallelMax));
 		extraParameters.put("parallelPreChecks", files(parallelPreChecks));
 	}
+
+	@Override
+	protected boolean watchesOutput() {
+		return failureFirst || failFast;
+	}
+
+	@Override
+	protected void outputLine(String line) {
+		TestReport current = report;
+		if (current != null) {
+			current.line(line);
+		}
+	}
+
+	@Override
+	protected int run() throws IOException, InterruptedException, MojoExecutionException {
+		if (!failureFirst && !failFast) {
+			return runTests(ignores);
+		}
+
+		long started = System.currentTimeMillis();
+		Properties previous = loadHistory();
+		long lastRun = Long.parseLong(previous.getProperty("lastRun", "0"));
+		List<File> all = allRascalSourceFiles(srcs, ignores);
+		Map<File, Long> durations = new HashMap<>();
+		Set<File> failed = new HashSet<>();
+
+		for (File module : all) {
+			String[] outcome = previous.getProperty(module.getPath(), "").split(",");
+			if (outcome.length == 2 && outcome[0].matches("-?\\d+")) {
+				if (!outcome[0].startsWith("-")) {
+					durations.put(module, Long.parseLong(outcome[0]));
+				}
+				if (outcome[1].equals("failed")) {
+					failed.add(module);
+				}
+			}
+		}
+
+		List<File> first = all.stream()
+			.filter(f -> failed.contains(f) || f.lastModified() > lastRun)
+			.collect(Collectors.toList());
+
+		long estimateFirst = estimate(first, durations);
+		long estimateAll = estimate(all, durations);
+
+		if (lastRun == 0 || first.isEmpty() || first.size() == all.size() || 2 * estimateFirst > estimateAll) {
+			// a separate pass would not give an answer much sooner
+			int exitCode = runPass(all, ignores, durations, failed);
+			storeHistory(started, all, durations, failed);
+			return exitCode;
+		}
+
+		List<File> rest = new LinkedList<>(all);
+		rest.removeAll(new HashSet<>(first));
+
+		getLog().info("Running " + first.size() + " failed or changed test modules first; they took " + estimateFirst + "ms of " + estimateAll + "ms before");
+		int firstExitCode = runPass(first, union(ignores, rest), durations, failed);
+		getLog().info("Failed or changed test modules took " + (System.currentTimeMillis() - started) + "ms");
+
+		if (firstExitCode != 0 && failFast) {
+			getLog().error("Stopping after the first failures (failFast); " + rest.size() + " test modules were not run");
+			storeHistory(started, all, durations, failed);
+			return firstExitCode;
+		}
+
+		int restExitCode = runPass(rest, union(ignores, first), durations, failed);
+
+		storeHistory(started, all, durations, failed);
+		return firstExitCode != 0 ? firstExitCode : restExitCode;
+	}
+
+	/**
+	 * Runs the given test modules and updates their outcome in `durations` and `failed`
+	 */
+	private int runPass(List<File> modules, List<File> ignored, Map<File, Long> durations, Set<File> failed) throws IOException, InterruptedException, MojoExecutionException {
+		TestReport pass = new TestReport(srcs, modules);
+		int exitCode;
+
+		report = pass;
+		try {
+			exitCode = runTests(ignored);
+		}
+		finally {
+			report = null;
+			pass.finish();
+		}
+
+		durations.putAll(pass.durations());
+		failed.removeAll(modules);
+
+		if (exitCode != 0) {
+			Set<File> failedNow = pass.failed();
+
+			if (failedNow.isEmpty()) {
+				getLog().debug("Could not tell from the output which test modules failed; remembering all " + modules.size() + " of them");
+				failed.addAll(modules);
+			}
+			else {
+				failed.addAll(failedNow);
+			}
+		}
+
+		return exitCode;
+	}
+
+	private int runTests(List<File> ignored) throws IOException, InterruptedException, MojoExecutionException {
+		return waitFor(runMain(verbose, "", srcs, ignored, libs, resources, bin, extraParameters, true));
+	}
+
+	/**
+	 * The expected duration of the given test modules; modules without a history count as an average one
+	 */
+	private static long estimate(List<File> modules, Map<File, Long> durations) {
+		long average = (long) durations.values().stream().mapToLong(Long::longValue).average().orElse(0);
+		return modules.stream().mapToLong(m -> durations.getOrDefault(m, average)).sum();
+	}
+
+	private static List<File> union(List<File> a, List<File> b) {
+		List<File> result = new LinkedList<>(a);
+		result.addAll(b);
+		return result;
+	}
+
+	private Properties loadHistory() {
+		Properties props = new Properties();
+
+		if (!history.exists()) {
+			return props;
+		}
+
+		try (InputStream in = new FileInputStream(history)) {
+			props.load(in);
+			Long.parseLong(props.getProperty("lastRun", "0"));
+		}
+		catch (IOException | IllegalArgumentException e) {
+			getLog().debug("Ignoring unreadable test history " + history, e);
+			props.clear();
+		}
+
+		return props;
+	}
+
+	/**
+	 * Per test module: the milliseconds it took (-1 if we could not tell), and whether it passed or failed.
+	 */
+	private void storeHistory(long started, List<File> all, Map<File, Long> durations, Set<File> failed) {
+		Properties props = new Properties();
+		props.setProperty("lastRun", Long.toString(started));
+
+		for (File module : all) {
+			props.setProperty(module.getPath(), durations.getOrDefault(module, -1L) + "," + (failed.contains(module) ? "failed" : "passed"));
+		}
+
+		history.getParentFile().mkdirs();
+
+		try (OutputStream out = new FileOutputStream(history)) {
+			props.store(out, "outcome of the last rascal:test run");
+		}
+		catch (IOException e) {
+			getLog().warn("Could not write test history " + history, e);
+		}
+	}
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.rascalmpl.maven;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the output of a RascalTest run to find out, per test module, whether it failed and how long it took.
+ *
+ * The output is meant for people, so this is a heuristic: a line that mentions a module, by file
+ * (as in a source location) or by qualified name, makes that the current module. A line that speaks
+ * of a failure or an error counts against the modules it mentions, or else against the current module.
+ * Words inside module names and paths do not count, so a module `Exceptions` or a folder `errors` does
+ * not fail by its name, and the summaries of RascalTest ("3/47 tests failed", "0/47 tests threw exceptions")
+ * count by their numbers. The time between two different current modules is attributed to the first one.
+ */
+class TestReport {
+	private static final Pattern FILE = Pattern.compile("([^\\s|\"'()<>]+\\.rsc)\\b");
+	private static final Pattern NAME = Pattern.compile("\\b([A-Za-z_\\\\][\\w\\\\]*(?:::[A-Za-z_\\\\][\\w\\\\]*)+)");
+	private static final Pattern FAILURE = Pattern.compile("(?i)(?<!\\b0 )\\b(fail(?:s|ed|ure|ures|ing)?|errors?|exceptions?)\\b");
+	private static final Pattern SUMMARY = Pattern.compile("\\b(\\d+)/\\d+ tests (?:failed|threw exceptions)\\b");
+	private static final Pattern PATH = Pattern.compile("[^\\s|\"'()<>]*/[^\\s|\"'()<>]*");
+	private static final Pattern WORD = Pattern.compile("\\b[A-Za-z_]\\w*\\b");
+
+	/**
+	 * The modules of this run, by their path relative to their source folder, with `/` as separator
+	 */
+	private final Map<String, File> modules = new HashMap<>();
+
+	/**
+	 * The names of the modules of this run that are not in a package, which are not qualified where they are mentioned
+	 */
+	private final Set<String> toplevel = new HashSet<>();
+	private final Set<File> failed = new HashSet<>();
+	private final Map<File, Long> durations = new HashMap<>();
+	private File current = null;
+	private long since = 0;
+
+	TestReport(List<File> srcs, List<File> tested) {
+		for (File module : tested) {
+			for (File src : srcs) {
+				if (module.toPath().startsWith(src.toPath())) {
+					String path = src.toPath().relativize(module.toPath()).toString().replace(File.separatorChar, '/');
+					modules.put(path, module);
+					if (!path.contains("/")) {
+						toplevel.add(path.substring(0, path.length() - ".rsc".length()));
+					}
+				}
+			}
+		}
+	}
+
+	synchronized void line(String line) {
+		long now = System.currentTimeMillis();
+		Set<File> mentioned = mentioned(line);
+
+		if (!mentioned.isEmpty() && !mentioned.contains(current)) {
+			close(now);
+			current = mentioned.iterator().next();
+			since = now;
+		}
+
+		if (reportsFailure(line)) {
+			if (!mentioned.isEmpty()) {
+				failed.addAll(mentioned);
+			}
+			else if (current != null) {
+				failed.add(current);
+			}
+		}
+	}
+
+	synchronized void finish() {
+		close(System.currentTimeMillis());
+		current = null;
+	}
+
+	synchronized Set<File> failed() {
+		return new HashSet<>(failed);
+	}
+
+	synchronized Map<File, Long> durations() {
+		return new HashMap<>(durations);
+	}
+
+	private boolean reportsFailure(String line) {
+		Matcher summary = SUMMARY.matcher(line);
+		if (summary.find()) {
+			return Integer.parseInt(summary.group(1)) > 0;
+		}
+
+		// what is left after removing the names of files, folders and modules
+		String words = FILE.matcher(line).replaceAll(" ");
+		words = PATH.matcher(words).replaceAll(" ");
+		words = NAME.matcher(words).replaceAll(" ");
+
+		StringBuilder rest = new StringBuilder();
+		Matcher word = WORD.matcher(words);
+		while (word.find()) {
+			word.appendReplacement(rest, toplevel.contains(word.group()) ? " " : word.group());
+		}
+		word.appendTail(rest);
+
+		return FAILURE.matcher(rest).find();
+	}
+
+	private void close(long now) {
+		if (current != null) {
+			durations.merge(current, now - since, Long::sum);
+		}
+	}
+
+	private Set<File> mentioned(String line) {
+		// in order of appearance, the first one becomes the current module
+		Set<File> result = new LinkedHashSet<>();
+
+		for (Matcher m = FILE.matcher(line); m.find(); ) {
+			String path = m.group(1).replace('\\', '/');
+
+			// try every suffix of the path, since we do not know what it is relative to
+			for (int i = 0; ; i = path.indexOf('/', i) + 1) {
+				File module = modules.get(path.substring(i));
+				if (module != null) {
+					result.add(module);
+					break;
+				}
+				if (path.indexOf('/', i) == -1) {
+					break;
+				}
+			}
+		}
+
+		for (Matcher m = NAME.matcher(line); m.find(); ) {
+			String path = m.group(1).replace("\\", "").replace("::", "/");
+
+			// a qualified name can also be a function or test in a module
+			File module = modules.get(path + ".rsc");
+			if (module == null && path.contains("/")) {
+				module = modules.get(path.substring(0, path.lastIndexOf('/')) + ".rsc");
+			}
+			if (module != null) {
+				result.add(module);
+			}
+		}
+
+		return result;
+	}
+}
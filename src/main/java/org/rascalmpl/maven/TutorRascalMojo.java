@@ -150,7 +150,7 @@ public class TutorRascalMojo extends AbstractRascalMojo
 
 			deps.add(0, bin);
 
-			int exitCode = runMain(
+			int exitCode = waitFor(runMain(
 				verbose,
 				screenshotter + (isRascalProject() ? (File.pathSeparator + deps.stream().map(Object::toString).collect(Collectors.joining(File.pathSeparator))) : ""),
 				srcs,
@@ -159,8 +159,7 @@ public class TutorRascalMojo extends AbstractRascalMojo
 				resources,
 				bin,
 				extraParameters,
-				true)
-				.waitFor();
+				true));
 
 			if (exitCode != 0) {
 				throw new MojoExecutionException(mainClass + " terminated with errors.");
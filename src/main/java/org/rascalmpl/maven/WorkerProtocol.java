@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.rascalmpl.maven;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format between {@link CompileRascalMojo} and {@link WorkerRascalMojo}.
+ *
+ * A job is one RascalCompile run: the file name of the Rascal runtime of the build (the worker only
+ * accepts jobs for the runtime it was started with), the working directory and the command line
+ * arguments (PathConfig and modules). The worker accepts or rejects the job, and only after it
+ * accepted the client sends the outputs it already has for the modules the job depends on, relative
+ * to `bin` and with their modification times, such that the compiler on the worker sees the same
+ * up-to-date modules as the build. The worker answers with chunks of the compiler's output, then the
+ * files the compiler wrote or changed, and finally its exit code. While the compiler runs the worker
+ * also sends a heartbeat, so the client can tell a quiet compiler from a worker that went away.
+ *
+ * The magic number and the token come first, so a worker reads nothing else from a client that
+ * does not know the token, and everything it reads has a bounded size.
+ *
+ * The paths of sources and libraries are used as-is on the worker, so it must see them at the same
+ * place as the build: on the same machine, in an identical checkout, or on a shared mount.
+ * The outputs come back over the connection, so `bin` does not have to be shared.
+ */
+final class WorkerProtocol {
+	private static final int MAGIC = 0x52534332;
+	private static final byte OUTPUT = 'O';
+	private static final byte FILE = 'F';
+	private static final byte EXIT = 'X';
+	private static final byte REJECTED = 'R';
+	private static final byte ACCEPTED = 'A';
+	private static final byte HEARTBEAT = 'H';
+
+	/**
+	 * How often a worker signals that it is still there, and how long a client waits for any sign of life
+	 */
+	static final long HEARTBEAT_MILLIS = 10_000;
+	private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+	private static final int MAX_TOKEN = 1024;
+	private static final int MAX_PATH = 4096;
+	private static final int MAX_ARGUMENTS = 100_000;
+	private static final int MAX_JOB_BYTES = 64 * 1024 * 1024;
+	private static final int MAX_FILES = 1_000_000;
+	private static final long MAX_FILE_BYTES = 4L * 1024 * 1024 * 1024;
+
+	static final class Job {
+		final String token;
+		final String runtime;
+		final String workingDirectory;
+		final List<String> arguments;
+
+		Job(String token, String runtime, String workingDirectory, List<String> arguments) {
+			this.token = token;
+			this.runtime = runtime;
+			this.workingDirectory = workingDirectory;
+			this.arguments = arguments;
+		}
+	}
+
+	/**
+	 * The worker did not accept the job; it is not a compilation error
+	 */
+	static final class Rejected extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		Rejected(String reason) {
+			super(reason);
+		}
+	}
+
+	private WorkerProtocol() { }
+
+	/**
+	 * Sends the job and the given `files` (up-to-date outputs in `bin` that the job depends on) to the
+	 * worker at `host:port`, copies its output to `output`, writes the compiled files into `bin` and
+	 * returns the exit code.
+	 *
+	 * @throws java.net.SocketTimeoutException when the worker did not answer, or stopped sending heartbeats
+	 */
+	static int submit(String address, Job job, List<Path> files, OutputStream output, Path bin) throws IOException {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			throw new IOException("Worker address " + address + " should look like host:port");
+		}
+
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))), 10_000);
+			socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+			socket.setKeepAlive(true);
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(MAGIC);
+			writeString(out, job.token);
+			writeString(out, job.runtime);
+			writeString(out, job.workingDirectory);
+			out.writeInt(job.arguments.size());
+			for (String a : job.arguments) {
+				writeString(out, a);
+			}
+			out.flush();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			byte answer = in.readByte();
+			if (answer == REJECTED) {
+				throw new Rejected(readString(in, Integer.MAX_VALUE));
+			}
+			else if (answer != ACCEPTED) {
+				throw new IOException("Unexpected answer from worker " + address);
+			}
+
+			out.writeInt(files.size());
+			for (Path file : files) {
+				writeString(out, bin.relativize(file).toString().replace(File.separatorChar, '/'));
+				out.writeLong(Files.getLastModifiedTime(file).toMillis());
+				byte[] content = Files.readAllBytes(file);
+				out.writeInt(content.length);
+				out.write(content);
+			}
+			out.flush();
+
+			while (true) {
+				byte kind = in.readByte();
+
+				if (kind == OUTPUT) {
+					byte[] chunk = readBytes(in, Integer.MAX_VALUE);
+					synchronized (output) {
+						output.write(chunk);
+						output.flush();
+					}
+				}
+				else if (kind == FILE) {
+					Path target = inside(bin, readString(in, Integer.MAX_VALUE));
+					Files.createDirectories(target.getParent());
+					Files.write(target, readBytes(in, Integer.MAX_VALUE));
+				}
+				else if (kind == HEARTBEAT) {
+					continue;
+				}
+				else if (kind == EXIT) {
+					return in.readInt();
+				}
+				else if (kind == REJECTED) {
+					throw new Rejected(readString(in, Integer.MAX_VALUE));
+				}
+				else {
+					throw new IOException("Unexpected answer from worker " + address);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a job, checking the magic number and the token before anything else.
+	 *
+	 * @throws Rejected when the token is wrong, after the client was told so
+	 */
+	static Job readJob(DataInputStream in, DataOutputStream out, String expectedToken) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a Rascal compile job");
+		}
+
+		String token = readString(in, MAX_TOKEN);
+		if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), expectedToken.getBytes(StandardCharsets.UTF_8))) {
+			reject(out, "wrong worker token");
+			throw new Rejected("wrong worker token");
+		}
+
+		int[] budget = { MAX_JOB_BYTES };
+		String runtime = readString(in, budget);
+		String workingDirectory = readString(in, budget);
+
+		int count = in.readInt();
+		if (count < 0 || count > MAX_ARGUMENTS) {
+			throw new IOException("Invalid number of arguments " + count);
+		}
+
+		List<String> arguments = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			arguments.add(readString(in, budget));
+		}
+
+		return new Job(token, runtime, workingDirectory, arguments);
+	}
+
+	/**
+	 * Accepts the job and then reads the files the client sends with it into `bin`, with their modification times
+	 */
+	static void accept(DataInputStream in, DataOutputStream out, Path bin) throws IOException {
+		out.writeByte(ACCEPTED);
+		out.flush();
+
+		int count = in.readInt();
+		if (count < 0 || count > MAX_FILES) {
+			throw new IOException("Invalid number of files " + count);
+		}
+
+		long budget = MAX_FILE_BYTES;
+		for (int i = 0; i < count; i++) {
+			Path target = inside(bin, readString(in, MAX_PATH));
+			long modified = in.readLong();
+			byte[] content = readBytes(in, (int) Math.min(Integer.MAX_VALUE, budget));
+			budget -= content.length;
+
+			Files.createDirectories(target.getParent());
+			Files.write(target, content);
+			Files.setLastModifiedTime(target, FileTime.fromMillis(modified));
+		}
+	}
+
+	static void reject(DataOutputStream out, String reason) throws IOException {
+		out.writeByte(REJECTED);
+		writeString(out, reason);
+		out.flush();
+	}
+
+	// the worker writes frames from the output relay and from the heartbeat, so each frame is written atomically
+
+	static void writeOutput(DataOutputStream out, byte[] buffer, int length) throws IOException {
+		synchronized (out) {
+			out.writeByte(OUTPUT);
+			out.writeInt(length);
+			out.write(buffer, 0, length);
+			out.flush();
+		}
+	}
+
+	static void writeHeartbeat(DataOutputStream out) throws IOException {
+		synchronized (out) {
+			out.writeByte(HEARTBEAT);
+			out.flush();
+		}
+	}
+
+	static void writeFile(DataOutputStream out, String relativePath, byte[] content) throws IOException {
+		synchronized (out) {
+			out.writeByte(FILE);
+			writeString(out, relativePath);
+			out.writeInt(content.length);
+			out.write(content);
+		}
+	}
+
+	static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+		synchronized (out) {
+			out.writeByte(EXIT);
+			out.writeInt(exitCode);
+			out.flush();
+		}
+	}
+
+	private static Path inside(Path bin, String relativePath) throws IOException {
+		Path target = bin.resolve(relativePath).normalize();
+		if (!target.startsWith(bin)) {
+			throw new IOException("File " + relativePath + " is outside of " + bin);
+		}
+		return target;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string that, together with the others, fits in what is left of the budget
+	 */
+	private static String readString(DataInputStream in, int[] budget) throws IOException {
+		byte[] bytes = readBytes(in, budget[0]);
+		budget[0] -= bytes.length;
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String readString(DataInputStream in, int max) throws IOException {
+		return new String(readBytes(in, max), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] readBytes(DataInputStream in, int max) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > max) {
+			throw new IOException("Invalid length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2009-2025, NWO-I Centrum Wiskunde & Informatica (CWI)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.rascalmpl.maven;
+
+import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Maven Goal that turns this machine into a compile worker for {@link CompileRascalMojo}.
+ *
+ * The worker listens for compile jobs (a PathConfig and a batch of modules) on a TCP port and
+ * runs each of them with the Rascal compiler in a fresh JVM. Start several on one machine
+ * with different ports, or one per build host, and list them in the `workers` parameter of
+ * the compile goal. The worker runs until it is stopped with Ctrl-C, or until it was idle for `idleTimeout` seconds.
+ *
+ * The compiler always comes from the worker's own Rascal runtime, configured with `rascalVersion`
+ * or `rascalRuntime`; builds that use a different runtime are turned away. Jobs refer to sources
+ * and libraries by their paths, so the worker must see those at the same place as the build.
+ * The build sends the outputs of the up-to-date modules a job depends on along with it, and
+ * the files the compiler wrote or changed are sent back. The worker only listens on the loopback interface
+ * by default, and requires a `workerToken` when it listens on any other interface.
+ */
+@Mojo(name="worker", requiresProject = false)
+public class WorkerRascalMojo extends AbstractMojo
+{
+	private static final String COMPILER = "org.rascalmpl.shell.RascalCompile";
+
+	/**
+	 * How long a client may take to send its job
+	 */
+	private static final int JOB_READ_TIMEOUT_MILLIS = 60_000;
+
+	@Parameter(property = "host", required = false, defaultValue = "127.0.0.1")
+	private String host;
+
+	@Parameter(property = "port", required = false, defaultValue = "8700")
+	private int port;
+
+	@Parameter(property = "workerThreads", required = false, defaultValue = "1")
+	private int workerThreads;
+
+	@Parameter(property = "memory", required = false, defaultValue = "2G")
+	private String memory;
+
+	/**
+	 * Only jobs that carry the same token are accepted; required when `host` is not a loopback address
+	 */
+	@Parameter(property = "workerToken", required = false, defaultValue = "")
+	private String workerToken;
+
+	/**
+	 * The version of org.rascalmpl:rascal to compile with; it is downloaded when it is not in the local repository
+	 */
+	@Parameter(property = "rascalVersion", required = false)
+	private String rascalVersion;
+
+	/**
+	 * The Rascal jar to compile with, instead of a `rascalVersion`
+	 */
+	@Parameter(property = "rascalRuntime", required = false)
+	private File rascalRuntime;
+
+	/**
+	 * Seconds without jobs after which the worker stops; 0 means never
+	 */
+	@Parameter(property = "idleTimeout", required = false, defaultValue = "0")
+	private long idleTimeout;
+
+	@Parameter(defaultValue = "${session}", required = true, readonly = true)
+	private MavenSession session;
+
+	@Parameter(defaultValue = "${project}", readonly = true)
+	private MavenProject project;
+
+	@SuppressWarnings("deprecation") // Can't get @Parameter to work for the pluginManager.
+	@Component
+	private BuildPluginManager pluginManager;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		ExecutorService jobs = Executors.newFixedThreadPool(workerThreads);
+		AtomicInteger running = new AtomicInteger();
+
+		try {
+			InetAddress address = InetAddress.getByName(host);
+
+			if (!address.isLoopbackAddress() && workerToken.isEmpty()) {
+				throw new MojoExecutionException("Listening on " + host + " makes the worker reachable from other machines; configure a workerToken");
+			}
+
+			Path runtime = runtime();
+
+			try (ServerSocket server = new ServerSocket(port, 50, address)) {
+				server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeout * 1000));
+				getLog().info("Rascal compile worker listening on " + host + ":" + port + ", compiling with " + runtime);
+
+				while (true) {
+					Socket client;
+
+					try {
+						client = server.accept();
+					}
+					catch (SocketTimeoutException e) {
+						if (running.get() == 0) {
+							getLog().info("No jobs for " + idleTimeout + " seconds; stopping");
+							return;
+						}
+						continue;
+					}
+
+					running.incrementAndGet();
+					jobs.submit(() -> {
+						try {
+							handle(client, runtime);
+						}
+						finally {
+							running.decrementAndGet();
+						}
+					});
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Rascal compile worker on " + host + ":" + port + " stopped", e);
+		}
+		finally {
+			jobs.shutdownNow();
+		}
+	}
+
+	private Path runtime() throws MojoExecutionException {
+		if (rascalRuntime != null) {
+			if (!rascalRuntime.exists()) {
+				throw new MojoExecutionException("Rascal runtime " + rascalRuntime + " does not exist");
+			}
+			return rascalRuntime.toPath().toAbsolutePath();
+		}
+
+		if (rascalVersion == null || rascalVersion.isEmpty()) {
+			throw new MojoExecutionException("Configure the Rascal runtime of the worker with -DrascalVersion=... or -DrascalRuntime=...");
+		}
+
+		Path jar = Path.of(session.getSettings().getLocalRepository(),
+			"org", "rascalmpl", "rascal", rascalVersion, "rascal-" + rascalVersion + ".jar");
+
+		if (!Files.exists(jar)) {
+			executeMojo(
+				plugin(
+					"org.apache.maven.plugins",
+					"maven-dependency-plugin",
+					"3.9.0"
+				),
+				goal("get"),
+				configuration(
+					element("artifact", "org.rascalmpl:rascal:" + rascalVersion),
+					// there is no pom.xml to get the repository from
+					element("remoteRepositories", "usethesource::default::https://releases.usethesource.io/maven/")
+				),
+				executionEnvironment(
+					project,
+					session,
+					pluginManager
+				)
+			);
+		}
+
+		return jar;
+	}
+
+	private void handle(Socket client, Path runtime) {
+		Path bin = null;
+
+		try (Socket socket = client) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			socket.setSoTimeout(JOB_READ_TIMEOUT_MILLIS);
+			WorkerProtocol.Job job = WorkerProtocol.readJob(in, out, workerToken);
+
+			if (!job.runtime.equals(runtime.getFileName().toString())) {
+				// the .tpl files of different Rascal versions do not mix
+				WorkerProtocol.reject(out, "the worker compiles with " + runtime.getFileName() + ", not with " + job.runtime);
+				getLog().warn("Rejected a job from " + socket.getRemoteSocketAddress() + " for " + job.runtime);
+				return;
+			}
+
+			// a fresh bin with the outputs of the up-to-date modules the job depends on
+			bin = Files.createTempDirectory("rascal-worker-bin-");
+			WorkerProtocol.accept(in, out, bin);
+			socket.setSoTimeout(0);
+
+			getLog().info("Compiling for " + socket.getRemoteSocketAddress() + " in " + job.workingDirectory);
+			long start = System.currentTimeMillis();
+			int exitCode = compile(job, runtime, bin, out);
+			getLog().info("Job for " + socket.getRemoteSocketAddress() + " finished with " + exitCode + " in " + (System.currentTimeMillis() - start) + "ms");
+
+			WorkerProtocol.writeExit(out, exitCode);
+		}
+		catch (WorkerProtocol.Rejected e) {
+			getLog().warn("Rejected a job from " + client.getRemoteSocketAddress() + ": " + e.getMessage());
+		}
+		catch (EOFException e) {
+			// liveness probes connect and close without sending a job
+			getLog().debug("Connection from " + client.getRemoteSocketAddress() + " closed before sending a job");
+		}
+		catch (IOException | InterruptedException e) {
+			getLog().warn("Job from " + client.getRemoteSocketAddress() + " failed: " + e.getMessage());
+		}
+		catch (RuntimeException e) {
+			getLog().warn("Job from " + client.getRemoteSocketAddress() + " failed", e);
+		}
+		finally {
+			if (bin != null) {
+				delete(bin);
+			}
+		}
+	}
+
+	/**
+	 * Runs the compiler of our own runtime in its own JVM, with the arguments of the client, but with
+	 * `-bin` pointing to the given folder. The files the compiler wrote or changed there are sent back afterwards.
+	 */
+	private int compile(WorkerProtocol.Job job, Path runtime, Path bin, DataOutputStream out) throws IOException, InterruptedException {
+		Path argumentFile = Files.createTempFile("rascal-worker-", ".args");
+		ScheduledExecutorService heartbeat = null;
+
+		try {
+			List<String> arguments = new LinkedList<>();
+			arguments.add("-Xmx" + memory);
+			arguments.add("-cp");
+			arguments.add(runtime.toString());
+			arguments.add(COMPILER);
+			arguments.addAll(withBin(job.arguments, bin));
+
+			AbstractRascalMojo.writeArgumentFile(argumentFile, arguments);
+
+			Map<Path, String> before = stamps(bin);
+
+			String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			Process process = new ProcessBuilder(javaBin, "@" + argumentFile)
+				.directory(new File(job.workingDirectory))
+				.redirectErrorStream(true)
+				.start();
+
+			// the compiler can be quiet for a long time, and the client must not take that for a dead worker
+			heartbeat = Executors.newSingleThreadScheduledExecutor();
+			heartbeat.scheduleAtFixedRate(() -> {
+				try {
+					WorkerProtocol.writeHeartbeat(out);
+				}
+				catch (IOException e) {
+					process.destroy();
+				}
+			}, WorkerProtocol.HEARTBEAT_MILLIS, WorkerProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+			byte[] buffer = new byte[8192];
+			int read;
+			try (InputStream in = process.getInputStream()) {
+				while ((read = in.read(buffer)) != -1) {
+					WorkerProtocol.writeOutput(out, buffer, read);
+				}
+			}
+			catch (IOException e) {
+				// the client went away; there is no use in compiling further
+				process.destroy();
+				throw e;
+			}
+
+			int exitCode = process.waitFor();
+
+			// also after errors, like a local compilation leaves the modules that did compile in bin
+			for (Map.Entry<Path, String> file : stamps(bin).entrySet()) {
+				if (!file.getValue().equals(before.get(file.getKey()))) {
+					WorkerProtocol.writeFile(out, bin.relativize(file.getKey()).toString().replace(File.separatorChar, '/'), Files.readAllBytes(file.getKey()));
+				}
+			}
+
+			return exitCode;
+		}
+		finally {
+			if (heartbeat != null) {
+				heartbeat.shutdownNow();
+			}
+			Files.deleteIfExists(argumentFile);
+		}
+	}
+
+	private static Map<Path, String> stamps(Path dir) throws IOException {
+		Map<Path, String> stamps = new HashMap<>();
+
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				stamps.put(file, Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file));
+			}
+		}
+
+		return stamps;
+	}
+
+	private void delete(Path dir) {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+		catch (IOException e) {
+			getLog().warn("Could not delete " + dir + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The arguments with `-bin` pointing to the given folder
+	 */
+	private static List<String> withBin(List<String> arguments, Path bin) {
+		List<String> result = new LinkedList<>(arguments);
+		int index = result.indexOf("-bin");
+
+		if (index >= 0 && index + 1 < result.size()) {
+			result.set(index + 1, bin.toString());
+		}
+		else {
+			result.add("-bin");
+			result.add(bin.toString());
+		}
+
+		return result;
+	}
+}